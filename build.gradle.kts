@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "dev.kofeychi"
@@ -28,6 +29,35 @@ dependencies {
     implementation("com.github.kwhat:jnativehook:+")
 }
 
+// Vector API code, the only part compiled against the incubator module. Main loads it by name when the module is present.
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+dependencies {
+    runtimeOnly(vector.output)
+}
+
+tasks.named<JavaCompile>("compileVectorJava") {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+tasks.withType<JavaExec> {
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    jvmArgsAppend.addAll("--add-modules", "jdk.incubator.vector")
+}
@@ -0,0 +1,61 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nearest palette lookup of random colors, per lookup mode, distance and palette size.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NearestColorBenchmark {
+    static final int QUERIES = 1 << 16;
+
+    @Param({"16", "64", "128", "256"})
+    public int paletteSize;
+
+    @Param({"LINEAR", "VECTOR", "INVERSE_COLORMAP", "KD_TREE"})
+    public NearestColorIndex.Mode mode;
+
+    @Param({"RGB", "OKLAB"})
+    public ColorDistance distance;
+
+    private NearestColorIndex index;
+    private int[] queries;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        var palette = new int[paletteSize];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt(1 << 24);
+        }
+        queries = new int[QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(1 << 24);
+        }
+        index = NearestColorIndex.create(mode, palette, distance);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int lookup() {
+        int sum = 0;
+        for (int q : queries) {
+            sum += index.nearestIndex(q);
+        }
+        return sum;
+    }
+}
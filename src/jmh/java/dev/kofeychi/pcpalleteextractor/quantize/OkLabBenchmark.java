@@ -0,0 +1,58 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table based OKLab conversion against the {@code pow}/{@code cbrt} reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OkLabBenchmark {
+    static final int COLORS = 1 << 16;
+
+    private int[] colors;
+    private final float[] lab = new float[3];
+    private final double[] exact = new double[3];
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        colors = new int[COLORS];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt(1 << 24);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLORS)
+    public float tables() {
+        float sum = 0;
+        for (int c : colors) {
+            OkLab.toLab(c, lab, 0);
+            sum += lab[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLORS)
+    public double reference() {
+        double sum = 0;
+        for (int c : colors) {
+            OkLab.toLabExact(c, exact);
+            sum += exact[0];
+        }
+        return sum;
+    }
+}
@@ -1,85 +1,139 @@
 package dev.kofeychi.pcpalleteextractor;
 
+import dev.kofeychi.pcpalleteextractor.image.CompactPalletedImage;
 import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+import dev.kofeychi.pcpalleteextractor.input.RobotInputDriver;
+import dev.kofeychi.pcpalleteextractor.plan.ColorScheduler;
+import dev.kofeychi.pcpalleteextractor.plan.PaintPlan;
+import dev.kofeychi.pcpalleteextractor.plan.PathOptimizer;
+import dev.kofeychi.pcpalleteextractor.plan.PlanAnalyzer;
+import dev.kofeychi.pcpalleteextractor.plan.PlanCompiler;
+import dev.kofeychi.pcpalleteextractor.plan.PlanExecutor;
+import dev.kofeychi.pcpalleteextractor.plan.StrokeCompiler;
 import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
 import org.joml.Vector2f;
 import org.joml.Vector2i;
 
 import java.awt.*;
-import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 public class AutoPaint {
+    /**
+     * Color picker field, the cursor ends up here after every color switch.
+     */
+    public static final Vector2f PICKER = new Vector2f(102, 703);
+    private static final long PLACE_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static InputDispatcher input;
+
+    /**
+     * Dispatcher shared by every paint call, created with a {@link RobotInputDriver} on first use.
+     */
+    public static synchronized InputDispatcher input() throws AWTException {
+        if (input == null) {
+            input = new InputDispatcher(new RobotInputDriver());
+        }
+        return input;
+    }
+
+    public static synchronized void setInput(InputDispatcher dispatcher) {
+        input = dispatcher;
+    }
+
     public static void click(Vector2f pos) throws Exception {
-        Robot bot = new Robot();
-        bot.mouseMove((int) pos.x, (int) pos.y);
-        Thread.sleep(10);
-        bot.mouseMove((int) pos.x-5, (int) pos.y);
-        Thread.sleep(10);
-        bot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
-        Thread.sleep(10);
-        bot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
-        Thread.sleep(10);
+        input().click((int) pos.x, (int) pos.y);
     }
     public static void type(String str,Vector2f pos) throws Exception {
-        Robot bot = new Robot();
-        bot.mouseMove((int) pos.x, (int) pos.y);
-        Thread.sleep(10);
-        bot.mouseMove((int) pos.x-5, (int) pos.y);
-        Thread.sleep(10);
+        var input = input();
+        input.move((int) pos.x, (int) pos.y);
+        input.move((int) pos.x-5, (int) pos.y);
         for (int i = 0; i < str.length(); i++) {
-            bot.keyPress(KeyEvent.VK_BACK_SPACE);
-            Thread.sleep(10);
-            bot.keyRelease(KeyEvent.VK_BACK_SPACE);
-            Thread.sleep(10);
-        }
-        for (Character ch : str.toCharArray()) {
-            bot.keyPress(KeyEvent.getExtendedKeyCodeForChar(ch));
-            Thread.sleep(10);
-            bot.keyRelease(KeyEvent.getExtendedKeyCodeForChar(ch));
-            Thread.sleep(10);
+            input.key(KeyEvent.VK_BACK_SPACE);
         }
+        input.type(str);
     }
-    public static void autoPaint(HashMap<String, PalletedImage> palletes, String side, TransformableGrid grid) throws Exception{
-        for (var pallete : palletes.get((String) side).palletes().keySet()) {
-            for (int i = 0; i < 4; i++) {
-                click(new Vector2f(102,703));
-                Thread.sleep(10);
-            }
-            for (int i = 0; i < 8; i++) {
-                Robot bot = new Robot();
-                bot.keyPress(KeyEvent.VK_RIGHT);
-                Thread.sleep(10);
-                bot.keyRelease(KeyEvent.VK_RIGHT);
-                Thread.sleep(10);
-            }
-            type(String.format("#%06X", (0xFFFFFF & pallete.getColor())),new Vector2f(102,703));
-            for (var pos : palletes.get((String) side).palletes().get(pallete)) {
-                click(grid.cached.get(pos));
-                Thread.sleep(10);
+    public static void selectColor(int color) throws Exception {
+        selectColor(color, null);
+    }
+    /**
+     * @param previous hex the picker is known to hold, see {@link PlanExecutor#switchColor}. {@code null} retypes everything
+     */
+    public static void selectColor(int color, String previous) throws Exception {
+        PlanExecutor.switchColor(input(), (int) PICKER.x, (int) PICKER.y, color, previous);
+    }
+    public static void autoPaint(Map<String, PalletedImage> palletes, String side, TransformableGrid grid) throws Exception{
+        autoPaint(palletes, side, grid, new ColorScheduler());
+    }
+    /**
+     * @param scheduler decides which colors get merged and which cells are already painted
+     */
+    public static void autoPaint(Map<String, PalletedImage> palletes, String side, TransformableGrid grid, ColorScheduler scheduler) throws Exception{
+        var schedule = scheduler.schedule(palletes.get(side));
+        System.out.println(schedule.describe(input().intervalNanos()));
+        autoPaint(schedule, grid, new StrokeCompiler());
+    }
+    public static void autoPaint(ColorScheduler.Schedule schedule, TransformableGrid grid) throws Exception{
+        autoPaint(schedule, grid, null);
+    }
+    /**
+     * @param strokes paints runs of a color as drags, {@code null} clicks every cell
+     */
+    public static void autoPaint(ColorScheduler.Schedule schedule, TransformableGrid grid, StrokeCompiler strokes) throws Exception{
+        var plan = PlanCompiler.compile(schedule, grid, strokes, PICKER);
+        System.out.println(PlanAnalyzer.analyze(plan, schedule.reusePrefix()).describe(input().intervalNanos()));
+        autoPaint(plan, schedule.reusePrefix());
+    }
+    public static void autoPaint(PaintPlan plan) throws Exception{
+        autoPaint(plan, false);
+    }
+    /**
+     * @param reusePrefix see {@link PlanExecutor#execute(PaintPlan, InputDispatcher, boolean)}
+     */
+    public static void autoPaint(PaintPlan plan, boolean reusePrefix) throws Exception{
+        PlanExecutor.execute(plan, input(), reusePrefix);
+        input().flush();
+    }
+    public static void autoPaint(CompactPalletedImage compact, TransformableGrid grid) throws Exception{
+        var image = PathOptimizer.reorder(compact, grid, PICKER, PathOptimizer.DEFAULT_BUDGET_NANOS);
+        var point = new Vector2f();
+        for (int i = 0; i < image.colorCount(); i++) {
+            selectColor(image.color(i));
+            for (int k = image.offsets()[i]; k < image.offsets()[i + 1]; k++) {
+                int x = image.x(k);
+                int y = image.y(k);
+                point.set(grid.screenX(x, y), grid.screenY(x, y));
+                click(point);
             }
-            Thread.sleep(10);
         }
+        input().flush();
     }
-    public static void autoPlace(HashMap<String, PalletedImage> palletes, String side, TransformableGrid grid, Predicate<PaintingData> shouldPaint) {
-        for (var pallete : palletes.get((String) side).palletes().keySet()) {
-            for (var pos : palletes.get((String) side).palletes().get(pallete)) {
+    public static void autoPlace(Map<String, PalletedImage> palletes, String side, TransformableGrid grid, Predicate<PaintingData> shouldPaint) {
+        var image = PathOptimizer.reorder(palletes.get(side), grid, PICKER, PathOptimizer.DEFAULT_BUDGET_NANOS);
+        for (var pallete : image.palletes().keySet()) {
+            for (var pos : image.palletes().get(pallete)) {
                 try {
                     if(!shouldPaint.test(new PaintingData(pallete,pos))) {
                         click(grid.cached.get(pos));
-                        Thread.sleep(100);
+                        input().pause(PLACE_PAUSE_NANOS);
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
                 }
             }
             try {
-                Thread.sleep(100);
-            } catch (InterruptedException ex) {
+                input().pause(PLACE_PAUSE_NANOS);
+            } catch (Exception ex) {
+                ex.printStackTrace();
             }
         }
+        try {
+            input().flush();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
     }
     public record PaintingData(ARGBColor color, Vector2i pos) {}
 }
@@ -0,0 +1,558 @@
+package dev.kofeychi.pcpalleteextractor;
+
+import dev.kofeychi.pcpalleteextractor.image.ImagePixels;
+import dev.kofeychi.pcpalleteextractor.quantize.ColorDistance;
+import dev.kofeychi.pcpalleteextractor.quantize.Ditherer;
+import dev.kofeychi.pcpalleteextractor.quantize.NearestColorIndex;
+import dev.kofeychi.pcpalleteextractor.quantize.Quantizer;
+import dev.kofeychi.pcpalleteextractor.quantize.RgbHistogram;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Vector;
+
+/**
+ * Two pass color reduction of images that don't fit in memory.
+ * The first pass decodes the image once from top to bottom, feeds the histogram and spills the ARGB pixels into
+ * a temporary file next to the output. The second hands the writer an image that maps strips of that file only when
+ * the writer asks for them, so memory is bounded by {@code width * stripRows} pixels whatever the image height.
+ * The result is written to a temporary file and moved over {@code output} at the end, so output may be the input.
+ */
+public class TiledColorReducer {
+    public static final int DEFAULT_STRIP_ROWS = 256;
+
+    public interface StripVisitor {
+        /**
+         * Strips come in order. A strip at {@code y = 0} after others starts the image over, readers that refine
+         * the image in several passes deliver it once per pass and only the last delivery is final.
+         *
+         * @param argb {@code rows * width} pixels, only valid during the call
+         */
+        void strip(int[] argb, int y, int rows) throws IOException;
+    }
+
+    public static void reduceColors(Path input, Path output, String format, int maxColors) throws IOException {
+        reduceColors(input, output, format, maxColors, Quantizer.medianCut(), NearestColorIndex.Mode.INVERSE_COLORMAP, ColorDistance.RGB, Ditherer.Mode.NONE, DEFAULT_STRIP_ROWS);
+    }
+
+    /**
+     * @param format    informal format name of the output, e.g. {@code "png"}
+     * @param stripRows rows decoded and mapped at a time
+     */
+    public static void reduceColors(Path input, Path output, String format, int maxColors, Quantizer quantizer,
+                                    NearestColorIndex.Mode lookup, ColorDistance distance, Ditherer.Mode dither, int stripRows) throws IOException {
+        Quantizer.checkColorCount(maxColors);
+        if (stripRows < 1) {
+            throw new IllegalArgumentException("Strip must have at least one row");
+        }
+        var writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No writer for format " + format);
+        }
+        var directory = output.toAbsolutePath().getParent();
+        var name = output.getFileName().toString();
+        var pixels = Files.createTempFile(directory, name, ".pixels");
+        var tmp = Files.createTempFile(directory, name, ".tmp");
+        try (var spill = FileChannel.open(pixels, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 1. Decode once, build the histogram and keep the pixels
+            RgbHistogram[] histogram = {new RgbHistogram()};
+            int width, height;
+            try (var in = ImageIO.createImageInputStream(input.toFile())) {
+                var reader = reader(in);
+                try {
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                    var bytes = ByteBuffer.allocate(width * Math.min(stripRows, height) * Integer.BYTES);
+                    readStrips(reader, stripRows, (argb, y, rows) -> {
+                        if (y == 0) {
+                            histogram[0] = new RgbHistogram();
+                        }
+                        histogram[0].addAll(argb, 0, rows * width);
+                        bytes.clear();
+                        bytes.asIntBuffer().put(argb, 0, rows * width);
+                        bytes.limit(rows * width * Integer.BYTES);
+                        long position = (long) y * width * Integer.BYTES;
+                        while (bytes.hasRemaining()) {
+                            spill.write(bytes, position + bytes.position());
+                        }
+                    });
+                } finally {
+                    reader.dispose();
+                }
+            }
+            int[] palette = histogram[0].isEmpty() ? new int[]{0} : quantizer.quantize(histogram[0], maxColors);
+
+            // 2. Map strips as the writer pulls them
+            var index = NearestColorIndex.create(lookup, palette, distance);
+            var image = new ReducedImage(spill, width, height, index, dither, stripRows);
+            ImageWriter writer = writers.next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), writer.getDefaultWriteParam());
+            } finally {
+                writer.dispose();
+            }
+            Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(pixels);
+        }
+    }
+
+    private static ImageReader reader(ImageInputStream in) throws IOException {
+        if (in == null) {
+            throw new IOException("Can't open image stream");
+        }
+        var readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("No reader for image");
+        }
+        var reader = readers.next();
+        reader.setInput(in, false, true);
+        return reader;
+    }
+
+    public static RgbHistogram histogram(ImageReader reader, int stripRows) throws IOException {
+        RgbHistogram[] histogram = {new RgbHistogram()};
+        int width = reader.getWidth(0);
+        readStrips(reader, stripRows, (argb, y, rows) -> {
+            if (y == 0) {
+                histogram[0] = new RgbHistogram();
+            }
+            histogram[0].addAll(argb, 0, rows * width);
+        });
+        return histogram[0];
+    }
+
+    /**
+     * Decodes image 0 in strips of {@code stripRows} rows. The reader decodes into a full size destination whose
+     * data buffer only holds one strip, and every strip is handed over as soon as the reader reports its last row,
+     * so the image is decoded once. Readers that don't report rows in order, like interlaced PNG, are read through
+     * one source region per strip instead, which decodes everything above a strip again.
+     */
+    public static void readStrips(ImageReader reader, int stripRows, StripVisitor visitor) throws IOException {
+        if (readForward(reader, stripRows, visitor)) {
+            return;
+        }
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        var argb = new int[width * Math.min(stripRows, height)];
+        for (int y = 0; y < height; y += stripRows) {
+            int rows = Math.min(stripRows, height - y);
+            var param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y, width, rows));
+            copy(reader.read(0, param), rows, argb);
+            visitor.strip(argb, y, rows);
+        }
+    }
+
+    private static void copy(BufferedImage strip, int rows, int[] argb) {
+        int width = strip.getWidth();
+        ImagePixels.forEachRow(strip, 0, rows, (data, offset, row) -> System.arraycopy(data, offset, argb, row * width, width));
+    }
+
+    /**
+     * @return {@code false} when nothing was handed over and the image has to be read some other way
+     */
+    private static boolean readForward(ImageReader reader, int stripRows, StripVisitor visitor) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        var type = reader.getRawImageType(0);
+        if (type == null) {
+            var types = reader.getImageTypes(0);
+            if (!types.hasNext()) {
+                return false;
+            }
+            type = types.next();
+        }
+        int windowRows = Math.min(stripRows, height);
+        BufferedImage strip;
+        SampleModel model;
+        try {
+            strip = type.createBufferedImage(width, windowRows);
+            model = type.getSampleModel(width, height);
+        } catch (IllegalArgumentException e) {
+            // more pixels than one raster can address
+            return false;
+        }
+        var target = strip.getRaster().getDataBuffer();
+        int stride = scanlineStride(model);
+        if (stride < 0 || stride != scanlineStride(strip.getSampleModel()) || (long) stride * height > Integer.MAX_VALUE
+                || strip.getRaster().getSampleModelTranslateX() != 0 || strip.getRaster().getSampleModelTranslateY() != 0) {
+            return false;
+        }
+        for (int offset : target.getOffsets()) {
+            if (offset != 0) {
+                return false;
+            }
+        }
+        var window = new WindowBuffer(target, stride * height, stride * windowRows);
+        var destination = new BufferedImage(strip.getColorModel(), Raster.createWritableRaster(model, window, null),
+                strip.isAlphaPremultiplied(), null);
+
+        var argb = new int[width * windowRows];
+        var listener = new IIOReadUpdateListener() {
+            int next;
+            boolean delivered;
+            boolean unordered;
+            IOException failure;
+
+            @Override
+            public void passStarted(ImageReader source, BufferedImage image, int pass, int minPass, int maxPass,
+                                    int minX, int minY, int periodX, int periodY, int[] bands) {
+                if (periodX != 1 || periodY != 1 || minX != 0 || minY != 0) {
+                    unordered = true;
+                }
+                // a refining pass goes through the whole image again
+                next = 0;
+            }
+
+            @Override
+            public void imageUpdate(ImageReader source, BufferedImage image, int minX, int minY, int w, int h,
+                                    int periodX, int periodY, int[] bands) {
+                if (unordered || failure != null) {
+                    return;
+                }
+                int stripStart = next - next % windowRows;
+                int stripEnd = Math.min(stripStart + windowRows, height);
+                if (minX != 0 || w != width || periodY != 1 || minY != next || minY + h > stripEnd) {
+                    unordered = true;
+                    return;
+                }
+                next += h;
+                if (next == stripEnd) {
+                    try {
+                        copy(strip, stripEnd - stripStart, argb);
+                        delivered = true;
+                        visitor.strip(argb, stripStart, stripEnd - stripStart);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+
+            @Override
+            public void passComplete(ImageReader source, BufferedImage image) {
+            }
+
+            @Override
+            public void thumbnailPassStarted(ImageReader source, BufferedImage image, int pass, int minPass, int maxPass,
+                                             int minX, int minY, int periodX, int periodY, int[] bands) {
+            }
+
+            @Override
+            public void thumbnailUpdate(ImageReader source, BufferedImage image, int minX, int minY, int w, int h,
+                                        int periodX, int periodY, int[] bands) {
+            }
+
+            @Override
+            public void thumbnailPassComplete(ImageReader source, BufferedImage image) {
+            }
+        };
+        var param = reader.getDefaultReadParam();
+        param.setDestination(destination);
+        reader.addIIOReadUpdateListener(listener);
+        try {
+            reader.read(0, param);
+        } catch (IOException | RuntimeException e) {
+            // readers that refuse the destination fail before the first row
+            if (listener.delivered) {
+                throw e;
+            }
+            return false;
+        } finally {
+            reader.removeIIOReadUpdateListener(listener);
+        }
+        if (listener.failure != null) {
+            throw listener.failure;
+        }
+        if (!listener.delivered) {
+            return false;
+        }
+        if (listener.unordered || listener.next != height) {
+            throw new IOException("Reader reported rows out of order after " + listener.next + " of " + height + " rows");
+        }
+        return true;
+    }
+
+    private static int scanlineStride(SampleModel model) {
+        if (model instanceof ComponentSampleModel component) {
+            return component.getScanlineStride();
+        }
+        if (model instanceof MultiPixelPackedSampleModel packed) {
+            return packed.getScanlineStride();
+        }
+        if (model instanceof SinglePixelPackedSampleModel packed) {
+            return packed.getScanlineStride();
+        }
+        return -1;
+    }
+
+    /**
+     * Data buffer of a full size image that keeps a window of rows, element {@code i} is element
+     * {@code i % period} of the target. Only the strip the reader is writing has to be valid.
+     */
+    private static class WindowBuffer extends DataBuffer {
+        private final DataBuffer target;
+        private final int period;
+
+        WindowBuffer(DataBuffer target, int size, int period) {
+            super(target.getDataType(), size, target.getNumBanks());
+            this.target = target;
+            this.period = period;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return target.getElem(bank, i % period);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            target.setElem(bank, i % period, val);
+        }
+
+        @Override
+        public float getElemFloat(int bank, int i) {
+            return target.getElemFloat(bank, i % period);
+        }
+
+        @Override
+        public void setElemFloat(int bank, int i, float val) {
+            target.setElemFloat(bank, i % period, val);
+        }
+
+        @Override
+        public double getElemDouble(int bank, int i) {
+            return target.getElemDouble(bank, i % period);
+        }
+
+        @Override
+        public void setElemDouble(int bank, int i, double val) {
+            target.setElemDouble(bank, i % period, val);
+        }
+    }
+
+    /**
+     * Reduced image made of full width strips that are read from the pixel file and mapped on demand.
+     * Error diffusion needs the strips in order, asking for an earlier one restarts from the top.
+     */
+    private static class ReducedImage implements RenderedImage {
+        private final FileChannel pixels;
+        private final NearestColorIndex index;
+        private final Ditherer.Mode dither;
+        private final int width;
+        private final int height;
+        private final int stripRows;
+        private final ColorModel colorModel = ColorModel.getRGBdefault();
+        private Ditherer ditherer;
+        private int nextStrip;
+        private int cachedStrip = -1;
+        private Raster cached;
+        private final ByteBuffer bytes;
+        private final int[] source;
+
+        ReducedImage(FileChannel pixels, int width, int height, NearestColorIndex index, Ditherer.Mode dither, int stripRows) {
+            this.pixels = pixels;
+            this.index = index;
+            this.dither = dither;
+            this.width = width;
+            this.height = height;
+            this.stripRows = stripRows;
+            int rows = Math.min(stripRows, height);
+            bytes = ByteBuffer.allocate(width * rows * Integer.BYTES);
+            source = new int[width * rows];
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            if (tileY == cachedStrip) {
+                return cached;
+            }
+            if (ditherer == null || !dither.isStateless() && tileY < nextStrip) {
+                ditherer = new Ditherer(dither, index, width);
+                nextStrip = 0;
+            }
+            if (dither.isStateless()) {
+                nextStrip = tileY;
+            }
+            try {
+                // stateful dithering has to run through the strips it skipped
+                while (nextStrip < tileY) {
+                    map(nextStrip++);
+                }
+                cached = map(nextStrip++);
+                cachedStrip = tileY;
+                return cached;
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't read strip " + tileY, e);
+            }
+        }
+
+        private Raster map(int strip) throws IOException {
+            int y0 = strip * stripRows;
+            int rows = Math.min(stripRows, height - y0);
+            bytes.clear().limit(width * rows * Integer.BYTES);
+            long position = (long) y0 * width * Integer.BYTES;
+            while (bytes.hasRemaining()) {
+                if (pixels.read(bytes, position + bytes.position()) < 0) {
+                    throw new IOException("Pixel file ends before row " + y0);
+                }
+            }
+            bytes.flip();
+            bytes.asIntBuffer().get(source, 0, width * rows);
+            var mapped = new int[width * rows];
+            for (int row = 0; row < rows; row++) {
+                ditherer.mapRow(source, row * width, mapped, row * width, y0 + row);
+            }
+            SampleModel model = colorModel.createCompatibleSampleModel(width, rows);
+            return Raster.createWritableRaster(model, new DataBufferInt(mapped, mapped.length), new Point(0, y0));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            var bounds = rect.intersection(new Rectangle(0, 0, width, height));
+            var raster = colorModel.createCompatibleWritableRaster(bounds.width, bounds.height)
+                    .createWritableTranslatedChild(bounds.x, bounds.y);
+            copyInto(raster, bounds);
+            return raster;
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                return (WritableRaster) getData();
+            }
+            copyInto(raster, raster.getBounds().intersection(new Rectangle(0, 0, width, height)));
+            return raster;
+        }
+
+        private void copyInto(WritableRaster raster, Rectangle bounds) {
+            if (bounds.isEmpty()) {
+                return;
+            }
+            int first = bounds.y / stripRows;
+            int last = (bounds.y + bounds.height - 1) / stripRows;
+            for (int strip = first; strip <= last; strip++) {
+                var tile = getTile(0, strip);
+                var part = tile.getBounds().intersection(bounds);
+                raster.setRect(tile.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+            }
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return java.awt.Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return colorModel.createCompatibleSampleModel(width, stripRows);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (height + stripRows - 1) / stripRows;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripRows;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
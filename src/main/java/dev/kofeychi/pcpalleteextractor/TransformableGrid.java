@@ -1,5 +1,6 @@
 package dev.kofeychi.pcpalleteextractor;
 
+import dev.kofeychi.pcpalleteextractor.image.CompactPalletedImage;
 import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.joml.Matrix3f;
@@ -24,6 +25,10 @@ public class TransformableGrid {
     public boolean cells = true;
 
     public Object2ObjectOpenHashMap<Vector2i, Vector2f> cached = new Object2ObjectOpenHashMap<>();
+    /**
+     * Same points as {@link #cached}, laid out as {@code [(y * grid_dimensions.x + x) * 2] = screenX, [.. + 1] = screenY}.
+     */
+    public float[] screenPoints = new float[0];
 
 
     public TransformableGrid(Rectangle2D rectangle) {
@@ -92,21 +97,43 @@ public class TransformableGrid {
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         if(shouldDrawImage) {
+            var h = calculateHomography();
             for (var pallete : current.palletes().entrySet()) {
+                var color = new Color(pallete.getKey().getColor());
                 for (Vector2i pos : pallete.getValue()) {
-                    fillCell(g2d,calculateHomography(),pos.x,pos.y,new Color(pallete.getKey().getColor()));
+                    fillCell(g2d,h,pos.x,pos.y,color);
                 }
             }
         }
+        paintGuides(g2d);
+    }
+
+    public void paint(Graphics g, CompactPalletedImage current,boolean shouldDrawImage) {
+        recalculatePoints();
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        if(shouldDrawImage) {
+            var h = calculateHomography();
+            for (int i = 0; i < current.colorCount(); i++) {
+                var color = new Color(current.color(i));
+                current.forEach(i, (x, y) -> fillCell(g2d, h, x, y, color));
+            }
+        }
+        paintGuides(g2d);
+    }
+
+    private void paintGuides(Graphics2D g2d) {
         if(!dots) {
             // 1. Рисуем сетку точек
             g2d.setColor(new Color(0, 180, 255));
             for (int i = 0; i < grid_dimensions.x; i++) {
                 for (int j = 0; j < grid_dimensions.y; j++) {
-                    var pos = cached.get(new Vector2i(i, j));
+                    float px = screenX(i, j);
+                    float py = screenY(i, j);
 
                     int dotSize = 4;
-                    g2d.fill(new Ellipse2D.Float(pos.x - dotSize / 2f, pos.y - dotSize / 2f, dotSize, dotSize));
+                    g2d.fill(new Ellipse2D.Float(px - dotSize / 2f, py - dotSize / 2f, dotSize, dotSize));
                 }
             }
 
@@ -163,9 +190,20 @@ public class TransformableGrid {
         recalculatePoints();
     }
 
+    public float screenX(int x, int y) {
+        return screenPoints[(y * grid_dimensions.x + x) * 2];
+    }
+
+    public float screenY(int x, int y) {
+        return screenPoints[(y * grid_dimensions.x + x) * 2 + 1];
+    }
+
     public void recalculatePoints() {
         var h = calculateHomography();
         cached.clear();
+        if (screenPoints.length != grid_dimensions.x * grid_dimensions.y * 2) {
+            screenPoints = new float[grid_dimensions.x * grid_dimensions.y * 2];
+        }
         for (int x = 0; x < grid_dimensions.x; x++) {
             for (int y = 0; y < grid_dimensions.y; y++) {
                 // Нормализованные координаты (u, v) от 0 до 1
@@ -180,6 +218,8 @@ public class TransformableGrid {
                 float screenY = projected.y / projected.z;
 
                 cached.put(new Vector2i(x,y),new Vector2f(screenX, screenY));
+                screenPoints[(y * grid_dimensions.x + x) * 2] = screenX;
+                screenPoints[(y * grid_dimensions.x + x) * 2 + 1] = screenY;
             }
         }
     }
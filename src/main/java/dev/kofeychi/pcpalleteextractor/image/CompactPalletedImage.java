@@ -0,0 +1,83 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+
+/**
+ * CSR layout of a {@link PalletedImage}: positions of {@code palette[i]} are
+ * {@code pixels[offsets[i] .. offsets[i + 1])}, each packed as {@code (y << 16) | x}.
+ * Palette is sorted the same way as {@link PalletedImage#palletes()} iterates.
+ * Roughly 4 bytes per pixel instead of a {@link Vector2i} and a list slot.
+ */
+public record CompactPalletedImage(int[] palette, int[] offsets, int[] pixels, Vector2i size) {
+
+    public interface PositionConsumer {
+        void accept(int x, int y);
+    }
+
+    public int colorCount() {
+        return palette.length;
+    }
+
+    public int pixelCount() {
+        return pixels.length;
+    }
+
+    public int color(int index) {
+        return palette[index];
+    }
+
+    public int count(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public int x(int pixel) {
+        return PalleteBuilder.unpackX(pixels[pixel]);
+    }
+
+    public int y(int pixel) {
+        return PalleteBuilder.unpackY(pixels[pixel]);
+    }
+
+    public void forEach(int index, PositionConsumer consumer) {
+        for (int k = offsets[index], end = offsets[index + 1]; k < end; k++) {
+            int p = pixels[k];
+            consumer.accept(PalleteBuilder.unpackX(p), PalleteBuilder.unpackY(p));
+        }
+    }
+
+    public static CompactPalletedImage of(PalletedImage image) {
+        var map = image.palletes();
+        var palette = new int[map.size()];
+        var offsets = new int[map.size() + 1];
+        int total = 0;
+        for (var list : map.values()) {
+            total += list.size();
+        }
+        var pixels = new int[total];
+        int i = 0;
+        int k = 0;
+        for (var entry : map.entrySet()) {
+            palette[i] = entry.getKey().getColor();
+            offsets[i] = k;
+            for (var pos : entry.getValue()) {
+                pixels[k++] = PalleteBuilder.pack(pos.x, pos.y);
+            }
+            i++;
+        }
+        offsets[i] = k;
+        return new CompactPalletedImage(palette, offsets, pixels, new Vector2i(image.size().x, image.size().y));
+    }
+
+    public PalletedImage toPalletedImage() {
+        var out = new PalletedImage(new Object2ObjectRBTreeMap<>(), new Vector2i(size.x, size.y));
+        for (int i = 0; i < palette.length; i++) {
+            var list = new ObjectArrayList<Vector2i>(count(i));
+            forEach(i, (x, y) -> list.add(new Vector2i(x, y)));
+            out.palletes().put(ARGBColor.ofTransparent(palette[i]), list);
+        }
+        return out;
+    }
+}
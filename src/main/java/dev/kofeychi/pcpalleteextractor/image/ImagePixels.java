@@ -0,0 +1,69 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Bulk ARGB access to {@link BufferedImage}s.
+ * Uses the backing {@code int[]} directly when the raster layout allows it,
+ * otherwise reads blocks of rows through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ */
+public final class ImagePixels {
+    public static final int BLOCK_ROWS = 64;
+
+    private ImagePixels() {
+    }
+
+    public interface RowVisitor {
+        /**
+         * @param data   pixel buffer, row starts at {@code offset} and spans the image width
+         * @param offset index of the first pixel of the row inside {@code data}
+         * @param y      row index in the image
+         */
+        void row(int[] data, int offset, int y);
+    }
+
+    /**
+     * Returns the raster array of a {@code TYPE_INT_ARGB} image when it is laid out as
+     * {@code data[y * width + x]}, {@code null} otherwise.
+     */
+    public static int[] directArgb(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        var raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt buffer)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel model)) {
+            return null;
+        }
+        if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || model.getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return buffer.getData();
+    }
+
+    /**
+     * Visits rows {@code [fromY, toY)} in order.
+     */
+    public static void forEachRow(BufferedImage image, int fromY, int toY, RowVisitor visitor) {
+        int width = image.getWidth();
+        var direct = directArgb(image);
+        if (direct != null) {
+            for (int y = fromY; y < toY; y++) {
+                visitor.row(direct, y * width, y);
+            }
+            return;
+        }
+        var block = new int[width * Math.min(BLOCK_ROWS, Math.max(toY - fromY, 1))];
+        for (int y = fromY; y < toY; y += BLOCK_ROWS) {
+            int rows = Math.min(BLOCK_ROWS, toY - y);
+            image.getRGB(0, y, width, rows, block, 0, width);
+            for (int r = 0; r < rows; r++) {
+                visitor.row(block, r * width, y + r);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+
+/**
+ * Color -> positions histogram on primitive collections.
+ * Colors are kept in first-seen order, positions in insertion order and packed as {@code (y << 16) | x},
+ * so both coordinates must be in {@code 0..MAX_COORDINATE}.
+ */
+public class PalleteBuilder {
+    public static final int MAX_COORDINATE = 0xFFFF;
+
+    private final Int2IntOpenHashMap slots = new Int2IntOpenHashMap();
+    private final IntArrayList colors = new IntArrayList();
+    private final ObjectArrayList<IntArrayList> positions = new ObjectArrayList<>();
+
+    public PalleteBuilder() {
+        slots.defaultReturnValue(-1);
+    }
+
+    /**
+     * @throws IllegalArgumentException when a coordinate doesn't fit in 16 bits
+     */
+    public static int pack(int x, int y) {
+        checkPosition(x, y);
+        return (y << 16) | x;
+    }
+
+    public static void checkPosition(int x, int y) {
+        if ((x | y) < 0 || x > MAX_COORDINATE || y > MAX_COORDINATE) {
+            throw new IllegalArgumentException("Position (" + x + ", " + y + ") is outside 0.." + MAX_COORDINATE);
+        }
+    }
+
+    public static int unpackX(int packed) {
+        return packed & 0xFFFF;
+    }
+
+    public static int unpackY(int packed) {
+        return packed >>> 16;
+    }
+
+    public int slot(int color) {
+        int slot = slots.get(color);
+        if (slot == -1) {
+            slot = colors.size();
+            slots.put(color, slot);
+            colors.add(color);
+            positions.add(new IntArrayList());
+        }
+        return slot;
+    }
+
+    public void add(int color, int x, int y) {
+        int packed = pack(x, y);
+        positions.get(slot(color)).add(packed);
+    }
+
+    /**
+     * Adds {@code width} pixels of row {@code y}, starting at {@code data[offset]}.
+     * Runs of the same color skip the hash lookup.
+     */
+    public void addRow(int[] data, int offset, int width, int y) {
+        if (width > 0) {
+            checkPosition(width - 1, y);
+        }
+        int lastColor = 0;
+        IntArrayList last = null;
+        for (int x = 0; x < width; x++) {
+            int color = data[offset + x];
+            if (last == null || color != lastColor) {
+                lastColor = color;
+                last = positions.get(slot(color));
+            }
+            last.add((y << 16) | x);
+        }
+    }
+
+    /**
+     * Appends everything from {@code other}; positions of {@code other} go after the ones already present.
+     */
+    public void merge(PalleteBuilder other) {
+        for (int i = 0; i < other.colors.size(); i++) {
+            positions.get(slot(other.colors.getInt(i))).addAll(other.positions.get(i));
+        }
+    }
+
+    public int colorCount() {
+        return colors.size();
+    }
+
+    public int color(int slot) {
+        return colors.getInt(slot);
+    }
+
+    public IntArrayList positions(int slot) {
+        return positions.get(slot);
+    }
+
+    public ExtractionResult toExtractionResult() {
+        var out = new ExtractionResult(new ObjectArrayList<>(colors.size()));
+        for (int i = 0; i < colors.size(); i++) {
+            out.colors().add(ARGBColor.ofTransparent(colors.getInt(i)));
+        }
+        return out;
+    }
+
+    public PalletedImage build(Vector2i size) {
+        var out = new PalletedImage(new Object2ObjectRBTreeMap<>(), size);
+        for (int i = 0; i < colors.size(); i++) {
+            var packed = positions.get(i);
+            var list = new ObjectArrayList<Vector2i>(packed.size());
+            for (int j = 0; j < packed.size(); j++) {
+                int p = packed.getInt(j);
+                list.add(new Vector2i(unpackX(p), unpackY(p)));
+            }
+            out.palletes().put(ARGBColor.ofTransparent(colors.getInt(i)), list);
+        }
+        return out;
+    }
+
+    public CompactPalletedImage toCompact(Vector2i size) {
+        var order = new int[colors.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        IntArrays.quickSort(order, (a, b) -> Integer.compare(colors.getInt(a), colors.getInt(b)));
+        var palette = new int[order.length];
+        var offsets = new int[order.length + 1];
+        int total = 0;
+        for (var list : positions) {
+            total += list.size();
+        }
+        var pixels = new int[total];
+        int k = 0;
+        for (int i = 0; i < order.length; i++) {
+            var list = positions.get(order[i]);
+            palette[i] = colors.getInt(order[i]);
+            offsets[i] = k;
+            list.getElements(0, pixels, k, list.size());
+            k += list.size();
+        }
+        offsets[order.length] = k;
+        return new CompactPalletedImage(palette, offsets, pixels, size);
+    }
+}
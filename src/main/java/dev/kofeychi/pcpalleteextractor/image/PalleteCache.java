@@ -0,0 +1,189 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import com.google.common.hash.Hashing;
+import dev.kofeychi.pcpalleteextractor.util.TexturePaths;
+import org.joml.Vector2i;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk cache of extracted {@link CompactPalletedImage}s keyed by the hash of the source PNG bytes.
+ * <p>
+ * Entry layout (big endian ints): magic, {@link PalleteExtractor#VERSION}, width, height,
+ * color count, pixel count, palette, offsets, pixels.
+ * Entries written by another extractor version or failing the consistency checks are dropped on read,
+ * least recently used entries are deleted once the directory grows past {@code maxBytes}.
+ */
+public class PalleteCache {
+    public static final int MAGIC = 0x5043504C; // "PCPL"
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String EXTENSION = ".pal";
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final long STALE_TMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int HEADER_INTS = 6;
+
+    private final Path root;
+    private final long maxBytes;
+
+    public PalleteCache() {
+        this(TexturePaths.CACHE_ROOT, DEFAULT_MAX_BYTES);
+    }
+
+    public PalleteCache(Path root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    public static String key(byte[] png) {
+        return Hashing.sha256().hashBytes(png).toString();
+    }
+
+    private Path entry(String key) {
+        return root.resolve(key + EXTENSION);
+    }
+
+    /**
+     * @return the cached image, or {@code null} when missing, stale or unreadable
+     */
+    public CompactPalletedImage load(String key) {
+        var file = entry(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var ints = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            if (ints.remaining() < HEADER_INTS || ints.get() != MAGIC || ints.get() != PalleteExtractor.VERSION) {
+                delete(file);
+                return null;
+            }
+            int width = ints.get();
+            int height = ints.get();
+            int colors = ints.get();
+            int pixels = ints.get();
+            if (colors < 0 || pixels < 0 || ints.remaining() != (long) colors * 2 + 1 + pixels) {
+                delete(file);
+                return null;
+            }
+            var out = new CompactPalletedImage(new int[colors], new int[colors + 1], new int[pixels], new Vector2i(width, height));
+            ints.get(out.palette());
+            ints.get(out.offsets());
+            ints.get(out.pixels());
+            if (!isConsistent(out)) {
+                delete(file);
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return out;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks what a damaged entry could get wrong: offsets have to split the pixels in order
+     * and every pixel has to lie inside the image.
+     */
+    static boolean isConsistent(CompactPalletedImage image) {
+        int width = image.size().x;
+        int height = image.size().y;
+        if (width < 0 || height < 0 || width > 0x10000 || height > 0x10000
+                || image.pixels().length > (long) width * height) {
+            return false;
+        }
+        var offsets = image.offsets();
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != image.pixels().length) {
+            return false;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                return false;
+            }
+        }
+        for (int p : image.pixels()) {
+            if (PalleteBuilder.unpackX(p) >= width || PalleteBuilder.unpackY(p) >= height) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void store(String key, CompactPalletedImage image) throws IOException {
+        Files.createDirectories(root);
+        var buffer = ByteBuffer.allocate((HEADER_INTS + image.palette().length + image.offsets().length + image.pixels().length) * Integer.BYTES);
+        var ints = buffer.asIntBuffer();
+        ints.put(MAGIC).put(PalleteExtractor.VERSION)
+                .put(image.size().x).put(image.size().y)
+                .put(image.palette().length).put(image.pixels().length)
+                .put(image.palette()).put(image.offsets()).put(image.pixels());
+        var tmp = Files.createTempFile(root, key, TMP_EXTENSION);
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, entry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        evict();
+    }
+
+    /**
+     * Deletes least recently used entries until the cache fits into {@code maxBytes}, and temporary files
+     * that a crashed store left behind.
+     */
+    public void evict() throws IOException {
+        record Entry(Path path, long size, long lastUsed) {}
+        long staleBefore = System.currentTimeMillis() - STALE_TMP_MILLIS;
+        try (var files = Files.list(root)) {
+            files.filter(f -> f.getFileName().toString().endsWith(TMP_EXTENSION)).forEach(f -> {
+                try {
+                    // younger ones may belong to a store still running in another process
+                    if (Files.getLastModifiedTime(f).toMillis() < staleBefore) {
+                        delete(f);
+                    }
+                } catch (IOException ignored) {
+                    // already gone
+                }
+            });
+        }
+        List<Entry> entries;
+        try (var files = Files.list(root)) {
+            entries = files.filter(f -> f.getFileName().toString().endsWith(EXTENSION)).map(f -> {
+                try {
+                    return new Entry(f, Files.size(f), Files.getLastModifiedTime(f).toMillis());
+                } catch (IOException e) {
+                    return new Entry(f, 0, 0);
+                }
+            }).sorted(Comparator.comparingLong(Entry::lastUsed)).collect(Collectors.toList());
+        }
+        long total = entries.stream().mapToLong(Entry::size).sum();
+        for (var entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            delete(entry.path());
+            total -= entry.size();
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // still mapped on some platforms, it will be replaced on the next store
+        }
+    }
+}
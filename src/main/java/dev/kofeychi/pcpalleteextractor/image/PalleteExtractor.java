@@ -1,39 +1,113 @@
 package dev.kofeychi.pcpalleteextractor.image;
 
-import dev.kofeychi.pcpalleteextractor.ColorReducer;
 import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
-import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.joml.Vector2i;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class PalleteExtractor {
+    /**
+     * Bump whenever extraction output changes, this invalidates {@link PalleteCache} entries.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Images with fewer pixels than this are extracted sequentially by the parallel entry points.
+     */
+    public static final int PARALLEL_THRESHOLD = 512 * 512;
+    public static final int TILE_PIXELS = 64 * 1024;
 
     public static ExtractionResult extractPallete(BufferedImage image){
         var out = new ExtractionResult(new ObjectArrayList<>());
-        for(int y = 0; y < image.getHeight(); y++){
-            for(int x = 0; x < image.getWidth(); x++){
-                var c = ARGBColor.ofTransparent(image.getRGB(x, y));
-                if(!out.colors().contains(c)){
-                    out.colors().add(c);
+        var seen = new IntOpenHashSet();
+        int width = image.getWidth();
+        ImagePixels.forEachRow(image, 0, image.getHeight(), (data, offset, y) -> {
+            for (int x = 0; x < width; x++) {
+                int c = data[offset + x];
+                if (seen.add(c)) {
+                    out.colors().add(ARGBColor.ofTransparent(c));
                 }
             }
-        }
+        });
         return out;
     }
+
+    /**
+     * Single pass over the raster: palette and per-color positions are collected together.
+     */
     public static PalletedImage extractPalletedImage(BufferedImage image){
-        var out = new PalletedImage(new Object2ObjectRBTreeMap<>(),new Vector2i(image.getWidth(),image.getHeight()));
-        var pallete = extractPallete(image);
-        for (var c : pallete.colors()){
-            out.palletes().put(c,new ObjectArrayList<>());
+        return histogram(image).build(new Vector2i(image.getWidth(), image.getHeight()));
+    }
+
+    public static CompactPalletedImage extractCompact(BufferedImage image){
+        return histogram(image).toCompact(new Vector2i(image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Fork/join variant of {@link #extractPalletedImage(BufferedImage)}, the result is identical.
+     */
+    public static PalletedImage extractPalletedImageParallel(BufferedImage image){
+        return histogramParallel(image).build(new Vector2i(image.getWidth(), image.getHeight()));
+    }
+
+    public static CompactPalletedImage extractCompactParallel(BufferedImage image){
+        return histogramParallel(image).toCompact(new Vector2i(image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Splits the image into row tiles, builds their histograms in parallel and merges them
+     * in row order, so colors and positions come out in the same order as {@link #histogram(BufferedImage)}.
+     */
+    public static PalleteBuilder histogramParallel(BufferedImage image) {
+        if ((long) image.getWidth() * image.getHeight() < PARALLEL_THRESHOLD) {
+            return histogram(image);
         }
-        for(int y = 0; y < image.getHeight(); y++){
-            for(int x = 0; x < image.getWidth(); x++){
-                var c = ARGBColor.ofTransparent(image.getRGB(x, y));
-                out.palletes().get(c).add(new Vector2i(x,y));
+        int tileRows = Math.max(1, TILE_PIXELS / image.getWidth());
+        return ForkJoinPool.commonPool().invoke(new HistogramTask(image, 0, image.getHeight(), tileRows));
+    }
+
+    public static PalleteBuilder histogram(BufferedImage image) {
+        return histogram(image, 0, image.getHeight());
+    }
+
+    /**
+     * Builds the color histogram of rows {@code [fromY, toY)}.
+     */
+    public static PalleteBuilder histogram(BufferedImage image, int fromY, int toY) {
+        var builder = new PalleteBuilder();
+        int width = image.getWidth();
+        ImagePixels.forEachRow(image, fromY, toY, (data, offset, y) -> builder.addRow(data, offset, width, y));
+        return builder;
+    }
+
+    private static class HistogramTask extends RecursiveTask<PalleteBuilder> {
+        private final BufferedImage image;
+        private final int fromY;
+        private final int toY;
+        private final int tileRows;
+
+        private HistogramTask(BufferedImage image, int fromY, int toY, int tileRows) {
+            this.image = image;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.tileRows = tileRows;
+        }
+
+        @Override
+        protected PalleteBuilder compute() {
+            if (toY - fromY <= tileRows) {
+                return histogram(image, fromY, toY);
             }
+            int mid = (fromY + toY) >>> 1;
+            var top = new HistogramTask(image, fromY, mid, tileRows);
+            top.fork();
+            var bottom = new HistogramTask(image, mid, toY, tileRows).compute();
+            var out = top.join();
+            out.merge(bottom);
+            return out;
         }
-        return out;
     }
 }
@@ -0,0 +1,23 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+/**
+ * One queued input event. {@code a} and {@code b} are the coordinates for {@link Kind#MOVE},
+ * the button mask or key code in {@code a} for presses and releases, and the nanoseconds to wait for {@link Kind#PAUSE}.
+ */
+public record InputAction(Kind kind, int a, int b) {
+    public enum Kind {
+        MOVE, PRESS, RELEASE, KEY_PRESS, KEY_RELEASE, PAUSE
+    }
+
+    void apply(InputDriver driver) {
+        switch (kind) {
+            case MOVE -> driver.mouseMove(a, b);
+            case PRESS -> driver.mousePress(a);
+            case RELEASE -> driver.mouseRelease(a);
+            case KEY_PRESS -> driver.keyPress(a);
+            case KEY_RELEASE -> driver.keyRelease(a);
+            case PAUSE -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns one {@link InputDriver} on a dedicated thread and replays queued events at a fixed rate.
+ * Events are scheduled on absolute deadlines, the thread parks until shortly before each one with
+ * {@link LockSupport#parkNanos} and spins the rest, so the gaps don't drift and jitter stays in microseconds.
+ * A dispatcher that fell behind restarts its schedule instead of bursting to catch up.
+ * Producers block once {@code capacity} events are waiting.
+ */
+public class InputDispatcher implements AutoCloseable {
+    public static final double DEFAULT_EVENTS_PER_SECOND = 100;
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * Events sent by {@link #click}, {@link #key} and {@link #drag}. Time predictions count these,
+     * so they have to change together with the methods.
+     */
+    public static final int CLICK_EVENTS = 4;
+    public static final int KEY_EVENTS = 2;
+    /**
+     * Parking wakes up late by tens of microseconds, the last stretch before a deadline is spun instead.
+     */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final InputAction STOP = new InputAction(InputAction.Kind.PAUSE, 0, 0);
+
+    private final InputDriver driver;
+    private final BlockingQueue<InputAction> queue;
+    private final Thread thread;
+    /**
+     * Held while queueing so that nothing can slip in behind the stop marker.
+     */
+    private final Object submitLock = new Object();
+    private final Object progress = new Object();
+    private volatile long intervalNanos;
+    private long submitted;
+    private long dispatched;
+    private volatile boolean closed;
+
+    public InputDispatcher(InputDriver driver) {
+        this(driver, DEFAULT_EVENTS_PER_SECOND, DEFAULT_CAPACITY);
+    }
+
+    public InputDispatcher(InputDriver driver, double eventsPerSecond, int capacity) {
+        this.driver = driver;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        setRate(eventsPerSecond);
+        thread = new Thread(this::run, "input-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void setRate(double eventsPerSecond) {
+        if (!(eventsPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        intervalNanos = (long) (1e9 / eventsPerSecond);
+    }
+
+    public long intervalNanos() {
+        return intervalNanos;
+    }
+
+    public void submit(InputAction action) throws InterruptedException {
+        synchronized (submitLock) {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            queue.put(action);
+            // counted only once queued, an interrupted put must not leave flush waiting for it
+            synchronized (progress) {
+                submitted++;
+            }
+        }
+    }
+
+    public void move(int x, int y) throws InterruptedException {
+        submit(new InputAction(InputAction.Kind.MOVE, x, y));
+    }
+
+    /**
+     * Moves to the point, nudges the cursor 5 pixels left so the target notices the hover, then left clicks.
+     */
+    public void click(int x, int y) throws InterruptedException {
+        move(x, y);
+        move(x - 5, y);
+        submit(new InputAction(InputAction.Kind.PRESS, InputEvent.BUTTON1_DOWN_MASK, 0));
+        submit(new InputAction(InputAction.Kind.RELEASE, InputEvent.BUTTON1_DOWN_MASK, 0));
+    }
+
+    /**
+     * Presses on the first of {@code count} points and drags through the rest before releasing,
+     * with the same hover nudge and 5 pixel offset as {@link #click}.
+     */
+    public void drag(int[] xs, int[] ys, int count) throws InterruptedException {
+        if (count == 0) {
+            return;
+        }
+        move(xs[0], ys[0]);
+        move(xs[0] - 5, ys[0]);
+        submit(new InputAction(InputAction.Kind.PRESS, InputEvent.BUTTON1_DOWN_MASK, 0));
+        for (int i = 1; i < count; i++) {
+            move(xs[i] - 5, ys[i]);
+        }
+        submit(new InputAction(InputAction.Kind.RELEASE, InputEvent.BUTTON1_DOWN_MASK, 0));
+    }
+
+    public static int dragEvents(int count) {
+        return count == 0 ? 0 : count + 3;
+    }
+
+    public void key(int keyCode) throws InterruptedException {
+        submit(new InputAction(InputAction.Kind.KEY_PRESS, keyCode, 0));
+        submit(new InputAction(InputAction.Kind.KEY_RELEASE, keyCode, 0));
+    }
+
+    public void type(String text) throws InterruptedException {
+        for (int i = 0; i < text.length(); i++) {
+            key(KeyEvent.getExtendedKeyCodeForChar(text.charAt(i)));
+        }
+    }
+
+    /**
+     * Delays the following events by {@code nanos} on top of the regular gap.
+     */
+    public void pause(long nanos) throws InterruptedException {
+        for (; nanos > 0; nanos -= Integer.MAX_VALUE) {
+            submit(new InputAction(InputAction.Kind.PAUSE, (int) Math.min(nanos, Integer.MAX_VALUE), 0));
+        }
+    }
+
+    /**
+     * Waits until every event submitted so far has been sent to the driver.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (progress) {
+            long target = submitted;
+            while (dispatched < target && thread.isAlive()) {
+                progress.wait(100);
+            }
+        }
+    }
+
+    private void run() {
+        long deadline = System.nanoTime();
+        try {
+            while (true) {
+                var action = queue.take();
+                if (action == STOP) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (now - deadline > intervalNanos) {
+                    deadline = now;
+                }
+                if (action.kind() == InputAction.Kind.PAUSE) {
+                    deadline += action.a();
+                } else {
+                    waitUntil(deadline);
+                    try {
+                        action.apply(driver);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    deadline += intervalNanos;
+                }
+                synchronized (progress) {
+                    dispatched++;
+                    progress.notifyAll();
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // closing
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long left;
+        while ((left = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(left - SPIN_NANOS);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Lets the queued events finish, then stops the thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            queue.put(STOP);
+            closed = true;
+        }
+        thread.join();
+    }
+}
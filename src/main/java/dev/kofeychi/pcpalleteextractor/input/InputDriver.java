@@ -0,0 +1,22 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+/**
+ * Low level input sink, only ever called from the {@link InputDispatcher} thread.
+ */
+public interface InputDriver {
+    void mouseMove(int x, int y);
+
+    /**
+     * @param buttons {@link java.awt.event.InputEvent} button masks
+     */
+    void mousePress(int buttons);
+
+    void mouseRelease(int buttons);
+
+    /**
+     * @param keyCode {@link java.awt.event.KeyEvent} key code
+     */
+    void keyPress(int keyCode);
+
+    void keyRelease(int keyCode);
+}
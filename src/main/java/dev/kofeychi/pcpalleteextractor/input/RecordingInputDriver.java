@@ -0,0 +1,70 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Headless driver that remembers every event with its {@link System#nanoTime()}, for checking the dispatcher's pacing.
+ */
+public class RecordingInputDriver implements InputDriver {
+    private final ObjectArrayList<InputAction> actions = new ObjectArrayList<>();
+    private final LongArrayList times = new LongArrayList();
+
+    private synchronized void record(InputAction.Kind kind, int a, int b) {
+        times.add(System.nanoTime());
+        actions.add(new InputAction(kind, a, b));
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        record(InputAction.Kind.MOVE, x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        record(InputAction.Kind.PRESS, buttons, 0);
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        record(InputAction.Kind.RELEASE, buttons, 0);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        record(InputAction.Kind.KEY_PRESS, keyCode, 0);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        record(InputAction.Kind.KEY_RELEASE, keyCode, 0);
+    }
+
+    public synchronized int size() {
+        return actions.size();
+    }
+
+    public synchronized InputAction action(int i) {
+        return actions.get(i);
+    }
+
+    public synchronized long time(int i) {
+        return times.getLong(i);
+    }
+
+    /**
+     * Largest deviation of the gaps between consecutive events from {@code expectedNanos}.
+     */
+    public synchronized long maxJitter(long expectedNanos) {
+        long max = 0;
+        for (int i = 1; i < times.size(); i++) {
+            max = Math.max(max, Math.abs(times.getLong(i) - times.getLong(i - 1) - expectedNanos));
+        }
+        return max;
+    }
+
+    public synchronized void clear() {
+        actions.clear();
+        times.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+import java.awt.AWTException;
+import java.awt.Robot;
+
+/**
+ * Real input through a single {@link Robot}, pacing is left to the dispatcher.
+ */
+public class RobotInputDriver implements InputDriver {
+    private final Robot robot;
+
+    public RobotInputDriver() throws AWTException {
+        robot = new Robot();
+        robot.setAutoDelay(0);
+        robot.setAutoWaitForIdle(false);
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        robot.mouseMove(x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        robot.mousePress(buttons);
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        robot.mouseRelease(buttons);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        robot.keyPress(keyCode);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        robot.keyRelease(keyCode);
+    }
+}
@@ -12,22 +12,24 @@ import dev.kofeychi.pcpalleteextractor.TransformableGrid;
 import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
 import dev.kofeychi.pcpalleteextractor.model.ModelFile;
 import dev.kofeychi.pcpalleteextractor.model.ParsedModelFile;
+import dev.kofeychi.pcpalleteextractor.plan.ColorScheduler;
+import dev.kofeychi.pcpalleteextractor.quantize.ColorDistance;
 import dev.kofeychi.pcpalleteextractor.util.*;
-import dev.kofeychi.pcpalleteextractor.image.PalleteExtractor;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.joml.Vector2i;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class Main {
@@ -41,16 +43,18 @@ public class Main {
     public static void main(String[] args) throws Exception {
         TexturePaths.prepare();
         var model = selectModel();
-        var images = new Object2ObjectOpenHashMap<String,BufferedImage>();
-        for (var tex : model.textures.values()) {
-            images.put(tex.path,ImageIO.read(TexturePaths.TEXTURE.resolve(tex.path.split("/")[1] + ".png").toFile()));
-        }
-        var palletes = new HashMap<String, PalletedImage>();
-        for (var image : images.entrySet()) {
-            palletes.put(image.getKey(),PalleteExtractor.extractPalletedImage(image.getValue()));
-        }
-
-        gui(palletes);
+        var palletes = new ConcurrentHashMap<String, PalletedImage>();
+        var addSide = gui(palletes);
+        var loader = new TextureLoader();
+        loader.loadModel(model, (name, image) -> {
+            palletes.put(name, image);
+            addSide.accept(name);
+        }).whenComplete((v, ex) -> {
+            loader.close();
+            if (ex != null) {
+                ex.printStackTrace();
+            }
+        });
     }
     public static ParsedModelFile selectModel() throws Exception {
         FileDialog dialog = new FileDialog((Frame)null, "Select model");
@@ -73,7 +77,21 @@ public class Main {
         return parsedModel;
     }
 
-    public static void gui(HashMap<String,PalletedImage> palletes) {
+    public static final Comparator<String> SIDE_ORDER = (a, b) -> {
+        try {
+            return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
+        } catch (NumberFormatException e) {
+            return a.compareTo(b);
+        }
+    };
+
+    /**
+     * Shows the overlay and control window for {@code palletes}.
+     *
+     * @return callback that adds a side, already put into {@code palletes}, to the side selector
+     */
+    public static Consumer<String> gui(Map<String,PalletedImage> palletes) {
+        var sides = new DefaultComboBoxModel<String>(palletes.keySet().stream().sorted(SIDE_ORDER).toArray(String[]::new));
         try {
             GlobalScreen.registerNativeHook();
             System.out.println("Native Hook Registered");
@@ -125,13 +143,7 @@ public class Main {
             final boolean[] draw = {false,true,true};
             overlay.getDrawPanel().addMouseListener(m);
             overlay.getDrawPanel().addMouseMotionListener(m);
-            var side = new JComboBox<>(palletes.keySet().stream().sorted((a,b)->{
-                try {
-                    return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
-                } catch (NumberFormatException e) {
-                    return a.compareTo(b);
-                }
-            }).toArray(String[]::new));
+            var side = new JComboBox<>(sides);
             var dots = new JToggleButton("dots");
             dots.addActionListener(e -> {
                 draw[1] = !draw[1];
@@ -139,6 +151,9 @@ public class Main {
                 overlay.getFrame().repaint();
             });
             side.addActionListener(e -> {
+                if (side.getSelectedItem() == null) {
+                    return;
+                }
                 grid.recalc(palletes.get((String)side.getSelectedItem()).size());
                 overlay.getFrame().repaint();
             });
@@ -147,20 +162,36 @@ public class Main {
                 draw[0] = !draw[0];
                 overlay.getFrame().repaint();
             });
-            overlay.getDrawPanel().on = g -> grid.paint(g,palletes.get((String) side.getSelectedItem()),draw[0]);
+            overlay.getDrawPanel().on = g -> {
+                if (side.getSelectedItem() != null) {
+                    grid.paint(g,palletes.get((String) side.getSelectedItem()),draw[0]);
+                }
+            };
             var fram = new JFrame();
             fram.setLayout(null);
             fram.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            fram.setBounds(0, 0, 256, 256*2+64);
+            fram.setBounds(0, 0, 256, 256*2+128);
             var autopaint = new JButton("Autopaint");
             var place = new JButton("Place");
             var cells = new JToggleButton("cells");
+            // colors this close in RGB units are painted as one
+            var tolerance = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 255.0, 1.0));
+            var whiteCanvas = new JToggleButton("white canvas");
+            // what each side looked like after its last finished autopaint, those cells are skipped next time
+            var painted = new HashMap<String, PalletedImage>();
+            var forget = new JButton("forget painted");
+            // retypes only the changed hex digits, needs the picker to keep the last hex between colors
+            var reusePrefix = new JToggleButton("reuse hex prefix");
+            forget.addActionListener(e -> painted.clear());
             cells.addActionListener(e -> {
                 grid.cells = draw[2];
                 draw[2] = !draw[2];
                 overlay.getFrame().repaint();
             });
             place.addActionListener(e -> {
+                if (side.getSelectedItem() == null) {
+                    return;
+                }
                 overlay.setVisible(false);
                 fram.setVisible(false);
                 AutoPaint.autoPlace(palletes,(String) side.getSelectedItem(),grid,painting != null ? painting : a -> false);
@@ -168,10 +199,18 @@ public class Main {
                 fram.setVisible(true);
             });
             autopaint.addActionListener(e -> {
+                if (side.getSelectedItem() == null) {
+                    return;
+                }
                 overlay.setVisible(false);
                 fram.setVisible(false);
+                var name = (String) side.getSelectedItem();
+                var scheduler = new ColorScheduler(((Number) tolerance.getValue()).doubleValue(), ColorDistance.RGB,
+                        whiteCanvas.isSelected() ? 0xFFFFFFFF : null, painted.get(name));
+                scheduler.reusePrefix = reusePrefix.isSelected();
                 try {
-                    AutoPaint.autoPaint(palletes,(String) side.getSelectedItem(),grid);
+                    AutoPaint.autoPaint(palletes,name,grid,scheduler);
+                    painted.put(name, palletes.get(name));
                 } catch (Exception ex) {
                     ex.printStackTrace();
                 }
@@ -184,12 +223,23 @@ public class Main {
             dots.setBounds(0, 128+64, 256, 64);
             place.setBounds(0, 256, 256, 64);
             cells.setBounds(0, 256+64, 256, 64);
+            var toleranceLabel = new JLabel("tolerance");
+            toleranceLabel.setBounds(0, 384, 128, 64);
+            tolerance.setBounds(128, 384, 128, 64);
+            whiteCanvas.setBounds(0, 448, 128, 64);
+            forget.setBounds(128, 448, 128, 64);
+            reusePrefix.setBounds(0, 512, 256, 64);
             fram.add(place);
             fram.add(dots);
             fram.add(autopaint);
             fram.add(drawTexture);
             fram.add(side);
             fram.add(cells);
+            fram.add(toleranceLabel);
+            fram.add(tolerance);
+            fram.add(whiteCanvas);
+            fram.add(forget);
+            fram.add(reusePrefix);
             fram.setVisible(true);
         });
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -199,5 +249,18 @@ public class Main {
                 e.printStackTrace();
             }
         }));
+        return name -> SwingUtilities.invokeLater(() -> {
+            if (sides.getIndexOf(name) != -1) {
+                return;
+            }
+            int index = 0;
+            while (index < sides.getSize() && SIDE_ORDER.compare(sides.getElementAt(index), name) < 0) {
+                index++;
+            }
+            sides.insertElementAt(name, index);
+            if (sides.getSelectedItem() == null) {
+                sides.setSelectedItem(name);
+            }
+        });
     }
 }
@@ -0,0 +1,110 @@
+package dev.kofeychi.pcpalleteextractor.painter;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteCache;
+import dev.kofeychi.pcpalleteextractor.image.PalleteExtractor;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.model.ParsedModelFile;
+import dev.kofeychi.pcpalleteextractor.util.Id;
+import dev.kofeychi.pcpalleteextractor.util.TexturePaths;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * Decodes and extracts model textures concurrently on virtual threads.
+ * At most {@link #DECODE_PERMITS} textures are decoded/extracted at once,
+ * each file is processed once no matter how many texture keys point at it.
+ * Extraction results are reused across launches through {@link PalleteCache}.
+ */
+public class TextureLoader implements AutoCloseable {
+    public static final int DECODE_PERMITS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final ConcurrentHashMap<Path, CompletableFuture<PalletedImage>> files = new ConcurrentHashMap<>();
+
+    private final PalleteCache cache;
+
+    public TextureLoader() {
+        this(DECODE_PERMITS, new PalleteCache());
+    }
+
+    /**
+     * @param cache persistent palette cache, {@code null} to always decode and extract
+     */
+    public TextureLoader(int permits, PalleteCache cache) {
+        this.permits = new Semaphore(permits);
+        this.cache = cache;
+    }
+
+    public static Path resolve(Id texture) {
+        return TexturePaths.TEXTURE.resolve(texture.path.split("/")[1] + ".png").normalize();
+    }
+
+    public CompletableFuture<PalletedImage> load(Path file) {
+        return files.computeIfAbsent(file, f -> CompletableFuture.supplyAsync(() -> decodeAndExtract(f), executor));
+    }
+
+    /**
+     * Starts loading every texture of {@code model}. {@code onLoaded} is called from a loader thread
+     * with the texture path (the same key {@link Main#main} always used) as soon as that texture is ready.
+     * The returned future completes once all textures are done.
+     */
+    public CompletableFuture<Void> loadModel(ParsedModelFile model, BiConsumer<String, PalletedImage> onLoaded) {
+        var names = new LinkedHashSet<String>();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var tex : model.textures.values()) {
+            if (names.add(tex.path)) {
+                futures.add(load(resolve(tex)).thenAccept(image -> onLoaded.accept(tex.path, image)));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    private PalletedImage decodeAndExtract(Path file) {
+        permits.acquireUninterruptibly();
+        try {
+            var bytes = Files.readAllBytes(file);
+            var key = cache == null ? null : PalleteCache.key(bytes);
+            var cached = cache == null ? null : cache.load(key);
+            if (cached != null) {
+                return cached.toPalletedImage();
+            }
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + file);
+            }
+            var compact = PalleteExtractor.extractCompactParallel(image);
+            if (cache != null) {
+                try {
+                    cache.store(key, compact);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return compact.toPalletedImage();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,222 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+import dev.kofeychi.pcpalleteextractor.quantize.ColorDistance;
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Decides which colors a paint session switches to, in what order, and how long it will take.
+ * Time is counted in input events since the dispatcher sends them at a fixed rate: a click is
+ * {@link InputDispatcher#CLICK_EVENTS}, a color switch is {@link PlanExecutor#switchEvents}, which grows with every
+ * erased and typed hex character.
+ * By default every switch clears and retypes the whole hex and colors keep their {@link ARGBColor} order.
+ * With {@link #reusePrefix} only the part after the common prefix with the last hex is retyped, and visiting colors in
+ * hex order types every shared prefix exactly once, which is the cheapest order under that cost.
+ */
+public class ColorScheduler {
+    /**
+     * Colors this close in {@link #distance} space are painted as the more frequent one,
+     * {@code 0} only merges colors with the same hex. RGB is in 0..255 units, OKLAB in 0..1.
+     */
+    public double tolerance;
+    public ColorDistance distance;
+    /**
+     * Color already covering the whole canvas, {@code null} when unknown.
+     */
+    public Integer background;
+    /**
+     * Known content of the canvas, takes precedence over {@link #background} for the cells it covers.
+     */
+    public PalletedImage canvas;
+    /**
+     * Trust the picker to still hold the hex typed last and only retype what differs. Nothing verifies the field, so
+     * only enable this when neither the game nor the user changes it during a session.
+     */
+    public boolean reusePrefix;
+
+    /**
+     * Exact colors only and nothing known about the canvas, every cell gets painted.
+     */
+    public ColorScheduler() {
+        this(0, ColorDistance.RGB, null, null);
+    }
+
+    public ColorScheduler(double tolerance, ColorDistance distance, Integer background, PalletedImage canvas) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance must be non negative");
+        }
+        this.tolerance = tolerance;
+        this.distance = distance;
+        this.background = background;
+        this.canvas = canvas;
+    }
+
+    /**
+     * @param switchEvents events spent on switching to this color after the previous step
+     */
+    public record Step(ARGBColor color, ObjectArrayList<Vector2i> positions, int switchEvents) {
+    }
+
+    /**
+     * @param reusePrefix the switch events assume {@link ColorScheduler#reusePrefix}, execute the plan the same way
+     */
+    public record Schedule(ObjectArrayList<Step> steps, int colors, int merged, int skippedColors, int skippedCells,
+                           boolean reusePrefix) {
+        public int switchEvents() {
+            int events = 0;
+            for (var step : steps) {
+                events += step.switchEvents();
+            }
+            return events;
+        }
+
+        public int clicks() {
+            int clicks = 0;
+            for (var step : steps) {
+                clicks += step.positions().size();
+            }
+            return clicks;
+        }
+
+        public long events() {
+            return switchEvents() + (long) clicks() * InputDispatcher.CLICK_EVENTS;
+        }
+
+        public long nanos(long intervalNanos) {
+            return events() * intervalNanos;
+        }
+
+        public String describe(long intervalNanos) {
+            return String.format("Predicted %s: %d of %d colors (%d merged, %d skipped, %d cells already painted), "
+                            + "%d switch events, %d clicks",
+                    duration(nanos(intervalNanos)), steps.size(), colors, merged, skippedColors, skippedCells,
+                    switchEvents(), clicks());
+        }
+    }
+
+    public static String hex(int color) {
+        return String.format("#%06X", 0xFFFFFF & color);
+    }
+
+    public static int sharedPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public static String duration(long nanos) {
+        long seconds = Math.round(nanos / 1e9);
+        return seconds >= 3600
+                ? String.format("%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * Builds the schedule, the image itself is left untouched.
+     */
+    public Schedule schedule(PalletedImage image) {
+        var entries = new ObjectArrayList<>(image.palletes().entrySet());
+        int colors = entries.size();
+        // heaviest colors first so they become the representatives
+        entries.sort(Comparator.comparingInt((Map.Entry<ARGBColor, ObjectArrayList<Vector2i>> e) -> e.getValue().size()).reversed());
+
+        var coords = new float[3];
+        var cell = new float[3];
+        var repCoords = new ObjectArrayList<float[]>();
+        var reps = new ObjectArrayList<Step>();
+        double limit = tolerance * tolerance;
+        var known = knownCells();
+        int merged = 0, skippedCells = 0;
+        for (var entry : entries) {
+            int color = entry.getKey().getColor();
+            distance.coords(color, coords, 0);
+            int target = -1;
+            double best = Double.MAX_VALUE;
+            for (int r = 0; r < reps.size(); r++) {
+                double d = squared(coords, repCoords.get(r));
+                if (d <= limit && d < best) {
+                    best = d;
+                    target = r;
+                }
+            }
+            if (target == -1) {
+                target = reps.size();
+                reps.add(new Step(entry.getKey(), new ObjectArrayList<>(), 0));
+                repCoords.add(coords.clone());
+            } else {
+                merged++;
+            }
+            var rep = reps.get(target);
+            var repCoord = repCoords.get(target);
+            for (var pos : entry.getValue()) {
+                if (isPainted(known, pos, rep.color().getColor(), repCoord, limit, cell)) {
+                    skippedCells++;
+                } else {
+                    rep.positions().add(pos);
+                }
+            }
+        }
+
+        reps.removeIf(step -> step.positions().isEmpty());
+        int skippedColors = colors - merged - reps.size();
+        if (reusePrefix) {
+            reps.sort(Comparator.comparingInt(step -> 0xFFFFFF & step.color().getColor()));
+        } else {
+            reps.sort(Comparator.comparing(Step::color));
+        }
+        var steps = new ObjectArrayList<Step>(reps.size());
+        String previous = null;
+        for (var step : reps) {
+            var hex = hex(step.color().getColor());
+            steps.add(new Step(step.color(), step.positions(), PlanExecutor.switchEvents(reusePrefix ? previous : null, hex)));
+            previous = hex;
+        }
+        return new Schedule(steps, colors, merged, skippedColors, skippedCells, reusePrefix);
+    }
+
+    private Int2IntOpenHashMap knownCells() {
+        if (canvas == null) {
+            return null;
+        }
+        var known = new Int2IntOpenHashMap();
+        for (var entry : canvas.palletes().entrySet()) {
+            for (var pos : entry.getValue()) {
+                known.put(PalleteBuilder.pack(pos.x, pos.y), entry.getKey().getColor());
+            }
+        }
+        return known;
+    }
+
+    private boolean isPainted(Int2IntOpenHashMap known, Vector2i pos, int target, float[] targetCoords, double limit, float[] scratch) {
+        int current;
+        int packed = PalleteBuilder.pack(pos.x, pos.y);
+        if (known != null && known.containsKey(packed)) {
+            current = known.get(packed);
+        } else if (background != null) {
+            current = background;
+        } else {
+            return false;
+        }
+        if ((0xFFFFFF & current) == (0xFFFFFF & target)) {
+            return true;
+        }
+        distance.coords(current, scratch, 0);
+        return squared(scratch, targetCoords) <= limit;
+    }
+
+    private static double squared(float[] a, float[] b) {
+        double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
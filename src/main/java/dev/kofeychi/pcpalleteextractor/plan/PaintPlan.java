@@ -0,0 +1,281 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A paint session as a flat list of ops in screen coordinates: color switch, click, stroke and wait.
+ * Compiled once by {@link PlanCompiler}, then inspected by {@link PlanAnalyzer}, replayed by {@link PlanExecutor}
+ * or saved, so nothing about the session needs the GUI.
+ * <p>
+ * In memory ops are packed into one int array: {@code COLOR argb}, {@code CLICK x y},
+ * {@code STROKE count x0 y0 x1 y1 ..}, {@code WAIT high low}.
+ * <p>
+ * File layout (big endian): int magic, int version, int picker x, picker y, int op count, int body length, then
+ * the body with one op byte per op. Colors are raw ints, wait times are unsigned varints and every point is a zigzag
+ * varint delta from the previous point, so neighbouring clicks take two or three bytes.
+ */
+public class PaintPlan {
+    public static final int MAGIC = 0x5043504E; // "PCPN", "PCPL" is taken by the palette cache
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".pcpl";
+
+    public static final int COLOR = 0;
+    public static final int CLICK = 1;
+    public static final int STROKE = 2;
+    public static final int WAIT = 3;
+
+    public interface OpConsumer {
+        void color(int argb);
+
+        void click(int x, int y);
+
+        /**
+         * Points are only valid during the call.
+         */
+        void stroke(int[] xs, int[] ys, int count);
+
+        void waitNanos(long nanos);
+    }
+
+    /**
+     * Color picker field every color switch types into.
+     */
+    public final int pickerX;
+    public final int pickerY;
+    private final IntArrayList code = new IntArrayList();
+    private int ops;
+
+    public PaintPlan(int pickerX, int pickerY) {
+        this.pickerX = pickerX;
+        this.pickerY = pickerY;
+    }
+
+    public int size() {
+        return ops;
+    }
+
+    public void color(int argb) {
+        code.add(COLOR);
+        code.add(argb);
+        ops++;
+    }
+
+    public void click(int x, int y) {
+        code.add(CLICK);
+        code.add(x);
+        code.add(y);
+        ops++;
+    }
+
+    public void stroke(int[] xs, int[] ys, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Stroke needs at least one point");
+        }
+        code.add(STROKE);
+        code.add(count);
+        for (int i = 0; i < count; i++) {
+            code.add(xs[i]);
+            code.add(ys[i]);
+        }
+        ops++;
+    }
+
+    public void waitNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Negative wait");
+        }
+        code.add(WAIT);
+        code.add((int) (nanos >>> 32));
+        code.add((int) nanos);
+        ops++;
+    }
+
+    public void accept(OpConsumer consumer) {
+        var xs = new int[16];
+        var ys = new int[16];
+        var ints = code.elements();
+        for (int i = 0, end = code.size(); i < end; ) {
+            switch (ints[i++]) {
+                case COLOR -> consumer.color(ints[i++]);
+                case CLICK -> {
+                    consumer.click(ints[i], ints[i + 1]);
+                    i += 2;
+                }
+                case STROKE -> {
+                    int count = ints[i++];
+                    if (xs.length < count) {
+                        xs = new int[count];
+                        ys = new int[count];
+                    }
+                    for (int k = 0; k < count; k++, i += 2) {
+                        xs[k] = ints[i];
+                        ys[k] = ints[i + 1];
+                    }
+                    consumer.stroke(xs, ys, count);
+                }
+                case WAIT -> {
+                    consumer.waitNanos((long) ints[i] << 32 | ints[i + 1] & 0xFFFFFFFFL);
+                    i += 2;
+                }
+                default -> throw new IllegalStateException("Bad op at " + (i - 1));
+            }
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        var body = new ByteArrayOutputStream(code.size() * 2);
+        int[] last = {pickerX, pickerY};
+        accept(new OpConsumer() {
+            @Override
+            public void color(int argb) {
+                body.write(COLOR);
+                for (int shift = 24; shift >= 0; shift -= 8) {
+                    body.write(argb >>> shift);
+                }
+            }
+
+            @Override
+            public void click(int x, int y) {
+                body.write(CLICK);
+                point(x, y);
+            }
+
+            @Override
+            public void stroke(int[] xs, int[] ys, int count) {
+                body.write(STROKE);
+                writeVarint(body, count);
+                for (int i = 0; i < count; i++) {
+                    point(xs[i], ys[i]);
+                }
+            }
+
+            @Override
+            public void waitNanos(long nanos) {
+                body.write(WAIT);
+                writeVarint(body, nanos);
+            }
+
+            private void point(int x, int y) {
+                writeVarint(body, zigzag(x - last[0]));
+                writeVarint(body, zigzag(y - last[1]));
+                last[0] = x;
+                last[1] = y;
+            }
+        });
+        var buffer = ByteBuffer.allocate(6 * Integer.BYTES + body.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(pickerX).putInt(pickerY).putInt(ops).putInt(body.size());
+        buffer.put(body.toByteArray());
+        buffer.flip();
+        var tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static PaintPlan read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 6 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a paint plan or written by another version");
+            }
+            var plan = new PaintPlan(buffer.getInt(), buffer.getInt());
+            int ops = buffer.getInt();
+            int length = buffer.getInt();
+            if (ops < 0 || length != buffer.remaining()) {
+                throw new IOException("Truncated plan");
+            }
+            int x = plan.pickerX, y = plan.pickerY;
+            var xs = new int[16];
+            var ys = new int[16];
+            try {
+                for (int op = 0; op < ops; op++) {
+                    switch (buffer.get()) {
+                        case COLOR -> plan.color(buffer.getInt());
+                        case CLICK -> {
+                            x += unzigzag(readVarint(buffer));
+                            y += unzigzag(readVarint(buffer));
+                            plan.click(x, y);
+                        }
+                        case STROKE -> {
+                            long count = readVarint(buffer);
+                            if (count < 1 || count > buffer.remaining()) {
+                                throw new IOException("Bad stroke length " + count);
+                            }
+                            if (xs.length < count) {
+                                xs = new int[(int) count];
+                                ys = new int[(int) count];
+                            }
+                            for (int i = 0; i < count; i++) {
+                                x += unzigzag(readVarint(buffer));
+                                y += unzigzag(readVarint(buffer));
+                                xs[i] = x;
+                                ys[i] = y;
+                            }
+                            plan.stroke(xs, ys, (int) count);
+                        }
+                        case WAIT -> {
+                            long nanos = readVarint(buffer);
+                            if (nanos < 0) {
+                                throw new IOException("Bad wait " + Long.toUnsignedString(nanos));
+                            }
+                            plan.waitNanos(nanos);
+                        }
+                        default -> throw new IOException("Bad op " + op);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated plan", e);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Trailing bytes after " + ops + " ops");
+            }
+            return plan;
+        }
+    }
+
+    private static long zigzag(int value) {
+        return (value << 1 ^ value >> 31) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,447 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.TransformableGrid;
+import dev.kofeychi.pcpalleteextractor.image.CompactPalletedImage;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2f;
+import org.joml.Vector2i;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Orders clicks to shorten cursor travel: nearest neighbour construction, then 2-opt until no move helps.
+ * Both steps only look at nearby points through a uniform grid, the construction grid is rebuilt whenever half of
+ * its points are visited so lookups don't crawl through emptied cells, and both stop at the time budget.
+ * Paths are open and start at a fixed point, usually where the cursor is after the color switch.
+ * Nothing passed in is modified, callers get an order or a reordered copy.
+ */
+public class PathOptimizer {
+    /**
+     * Candidate neighbours per point for 2-opt.
+     */
+    public static final int NEIGHBOURS = 8;
+    public static final long DEFAULT_BUDGET_NANOS = 50_000_000L;
+
+    public record Result(int[] order, double before, double after) {
+        public double saved() {
+            return before - after;
+        }
+
+        /**
+         * {@code items} in this order, as a new list.
+         */
+        public <T> ObjectArrayList<T> apply(List<T> items) {
+            var out = new ObjectArrayList<T>(order.length);
+            for (int i : order) {
+                out.add(items.get(i));
+            }
+            return out;
+        }
+
+        public Result plus(Result other) {
+            return new Result(null, before + other.before, after + other.after);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("travel %.0f px -> %.0f px (saved %.0f px, %.1f%%)",
+                    before, after, saved(), before == 0 ? 0 : 100 * saved() / before);
+        }
+    }
+
+    /**
+     * Points bucketed into square cells of a uniform grid, each cell lists its points in a CSR layout.
+     */
+    private static class PointGrid {
+        final float minX, minY, cell;
+        final int columns, rows;
+        final int[] start;
+        final int[] points;
+        /**
+         * Live points per cell for nearest neighbour, the first {@code live[c]} entries of the cell are unvisited.
+         */
+        final int[] live;
+        final int[] slot;
+
+        PointGrid(float[] xs, float[] ys) {
+            this(xs, ys, identity(xs.length), xs.length, new int[xs.length]);
+        }
+
+        /**
+         * Grid over the first {@code count} points of {@code ids}, {@code slot} is indexed by point and may be shared
+         * with an earlier grid that is no longer used.
+         */
+        PointGrid(float[] xs, float[] ys, int[] ids, int count, int[] slot) {
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (int k = 0; k < count; k++) {
+                int i = ids[k];
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            float area = Math.max(1, maxX - minX) * Math.max(1, maxY - minY);
+            // about two points per cell
+            float cell = (float) Math.max(1, Math.sqrt(2 * area / count));
+            // when the points crowd into a small part of the box, shrink cells until the occupied ones hold about two,
+            // with the total cell count kept linear in the points
+            long maxCells = 4L * count + 16;
+            var occupied = new IntOpenHashSet();
+            for (int round = 0; round < 4; round++) {
+                int columns = (int) ((maxX - minX) / cell) + 1;
+                occupied.clear();
+                for (int k = 0; k < count; k++) {
+                    int i = ids[k];
+                    occupied.add((int) ((ys[i] - minY) / cell) * columns + (int) ((xs[i] - minX) / cell));
+                }
+                double perCell = (double) count / occupied.size();
+                if (perCell <= 4) {
+                    break;
+                }
+                float next = (float) Math.max(1, cell / Math.sqrt(perCell / 2));
+                while (next < cell && cellCount(maxX - minX, maxY - minY, next) > maxCells) {
+                    next *= 1.25f;
+                }
+                if (next >= cell) {
+                    break;
+                }
+                cell = next;
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.cell = cell;
+            this.columns = (int) ((maxX - minX) / cell) + 1;
+            this.rows = (int) ((maxY - minY) / cell) + 1;
+            start = new int[columns * rows + 1];
+            points = new int[count];
+            this.slot = slot;
+            var cellOf = new int[count];
+            for (int k = 0; k < count; k++) {
+                cellOf[k] = cellIndex(xs[ids[k]], ys[ids[k]]);
+                start[cellOf[k] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                start[c + 1] += start[c];
+            }
+            var fill = Arrays.copyOf(start, columns * rows);
+            for (int k = 0; k < count; k++) {
+                int i = ids[k];
+                slot[i] = fill[cellOf[k]]++;
+                points[slot[i]] = i;
+            }
+            live = new int[columns * rows];
+            for (int c = 0; c < live.length; c++) {
+                live[c] = start[c + 1] - start[c];
+            }
+        }
+
+        /**
+         * Unvisited points, cell by cell in a serpentine over the rows so consecutive points stay close.
+         */
+        int collectLive(int[] out, int at) {
+            for (int r = 0; r < rows; r++) {
+                for (int k = 0; k < columns; k++) {
+                    int c = r * columns + ((r & 1) == 0 ? k : columns - 1 - k);
+                    for (int s = start[c], end = s + live[c]; s < end; s++) {
+                        out[at++] = points[s];
+                    }
+                }
+            }
+            return at;
+        }
+
+        static long cellCount(float width, float height, float cell) {
+            return ((long) (width / cell) + 1) * ((long) (height / cell) + 1);
+        }
+
+        int column(float x) {
+            return Math.min(columns - 1, Math.max(0, (int) ((x - minX) / cell)));
+        }
+
+        int row(float y) {
+            return Math.min(rows - 1, Math.max(0, (int) ((y - minY) / cell)));
+        }
+
+        int cellIndex(float x, float y) {
+            return row(y) * columns + column(x);
+        }
+
+        void remove(int p, float x, float y) {
+            int c = cellIndex(x, y);
+            int last = start[c] + --live[c];
+            int at = slot[p];
+            int other = points[last];
+            points[at] = other;
+            slot[other] = at;
+            points[last] = p;
+            slot[p] = last;
+        }
+    }
+
+    private static int[] identity(int n) {
+        var ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    private static float distance(float[] xs, float[] ys, int a, int b) {
+        float dx = xs[a] - xs[b];
+        float dy = ys[a] - ys[b];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public static double length(float[] xs, float[] ys, int[] order, float startX, float startY) {
+        if (order.length == 0) {
+            return 0;
+        }
+        double total = Math.hypot(xs[order[0]] - startX, ys[order[0]] - startY);
+        for (int i = 1; i < order.length; i++) {
+            total += distance(xs, ys, order[i - 1], order[i]);
+        }
+        return total;
+    }
+
+    public static Result optimize(float[] xs, float[] ys, float startX, float startY, long budgetNanos) {
+        int n = xs.length;
+        var identity = identity(n);
+        double before = length(xs, ys, identity, startX, startY);
+        if (!Double.isFinite(before)) {
+            // degenerate grid, nothing to measure against
+            return new Result(identity, before, before);
+        }
+        if (n < 3) {
+            var order = nearestNeighbour(xs, ys, startX, startY, n == 0 ? null : new PointGrid(xs, ys), Long.MAX_VALUE);
+            return new Result(order, before, length(xs, ys, order, startX, startY));
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        var order = nearestNeighbour(xs, ys, startX, startY, new PointGrid(xs, ys), deadline);
+        if (System.nanoTime() < deadline) {
+            twoOpt(xs, ys, order, neighbours(xs, ys, new PointGrid(xs, ys)), deadline);
+        }
+        double after = length(xs, ys, order, startX, startY);
+        // never hand back something worse than what came in
+        return after <= before ? new Result(order, before, after) : new Result(identity, before, before);
+    }
+
+    /**
+     * The grid is rebuilt over the unvisited points whenever half of them are gone, so rings don't grow through
+     * emptied cells towards the end of the tour. Past the deadline the rest is appended in grid order.
+     */
+    private static int[] nearestNeighbour(float[] xs, float[] ys, float startX, float startY, PointGrid grid, long deadline) {
+        int n = xs.length;
+        var order = new int[n];
+        int built = n;
+        float x = startX, y = startY;
+        for (int k = 0; k < n; k++) {
+            int left = n - k;
+            if (k > 0 && left * 2 <= built) {
+                var ids = new int[left];
+                grid.collectLive(ids, 0);
+                grid = new PointGrid(xs, ys, ids, left, grid.slot);
+                built = left;
+            }
+            if ((k & 255) == 255 && System.nanoTime() >= deadline) {
+                grid.collectLive(order, k);
+                return order;
+            }
+            int best = -1;
+            float bestDistance = Float.MAX_VALUE;
+            if (k == 0) {
+                // the start may lie outside of the grid where ring distances don't hold, scan everything once
+                for (int p = 0; p < n; p++) {
+                    float dx = xs[p] - x, dy = ys[p] - y;
+                    float d = (float) Math.sqrt(dx * dx + dy * dy);
+                    if (d < bestDistance) {
+                        bestDistance = d;
+                        best = p;
+                    }
+                }
+                order[0] = best;
+                grid.remove(best, xs[best], ys[best]);
+                x = xs[best];
+                y = ys[best];
+                continue;
+            }
+            int cx = grid.column(x), cy = grid.row(y);
+            int maxRing = Math.max(grid.columns, grid.rows);
+            for (int ring = 0; ring <= maxRing; ring++) {
+                // cells of this ring are at least (ring - 1) cells away, nothing closer can be found past the best
+                if (best != -1 && (ring - 1) * grid.cell > bestDistance) {
+                    break;
+                }
+                for (int gy = cy - ring; gy <= cy + ring; gy++) {
+                    if (gy < 0 || gy >= grid.rows) continue;
+                    boolean edgeRow = gy == cy - ring || gy == cy + ring;
+                    for (int gx = cx - ring; gx <= cx + ring; gx += edgeRow ? 1 : 2 * ring) {
+                        if (gx >= 0 && gx < grid.columns) {
+                            int c = gy * grid.columns + gx;
+                            for (int s = grid.start[c], end = s + grid.live[c]; s < end; s++) {
+                                int p = grid.points[s];
+                                float dx = xs[p] - x, dy = ys[p] - y;
+                                float d = (float) Math.sqrt(dx * dx + dy * dy);
+                                if (d < bestDistance) {
+                                    bestDistance = d;
+                                    best = p;
+                                }
+                            }
+                        }
+                        if (ring == 0) break;
+                    }
+                }
+            }
+            order[k] = best;
+            grid.remove(best, xs[best], ys[best]);
+            x = xs[best];
+            y = ys[best];
+        }
+        return order;
+    }
+
+    /**
+     * Up to {@link #NEIGHBOURS} nearest points of every point, taken from at most the surrounding 5x5 cells
+     * and fewer once the candidates are closer than the next ring.
+     */
+    private static int[][] neighbours(float[] xs, float[] ys, PointGrid grid) {
+        int n = xs.length;
+        var out = new int[n][];
+        var best = new int[NEIGHBOURS];
+        var bestDistance = new float[NEIGHBOURS];
+        for (int p = 0; p < n; p++) {
+            int count = 0;
+            int cx = grid.column(xs[p]), cy = grid.row(ys[p]);
+            for (int ring = 0; ring <= 2; ring++) {
+                // everything past this ring is at least ring cells away
+                if (ring > 0 && count == NEIGHBOURS && bestDistance[count - 1] <= (ring - 1) * grid.cell) {
+                    break;
+                }
+                for (int gy = cy - ring; gy <= cy + ring; gy++) {
+                    if (gy < 0 || gy >= grid.rows) continue;
+                    boolean edgeRow = gy == cy - ring || gy == cy + ring;
+                    for (int gx = cx - ring; gx <= cx + ring; gx += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                        if (gx < 0 || gx >= grid.columns) continue;
+                        int c = gy * grid.columns + gx;
+                        for (int s = grid.start[c]; s < grid.start[c + 1]; s++) {
+                            int q = grid.points[s];
+                            if (q == p) continue;
+                            float d = distance(xs, ys, p, q);
+                            if (count == NEIGHBOURS && d >= bestDistance[count - 1]) continue;
+                            // insertion into the sorted candidate list
+                            int at = count == NEIGHBOURS ? count - 1 : count++;
+                            while (at > 0 && bestDistance[at - 1] > d) {
+                                best[at] = best[at - 1];
+                                bestDistance[at] = bestDistance[at - 1];
+                                at--;
+                            }
+                            best[at] = q;
+                            bestDistance[at] = d;
+                        }
+                    }
+                }
+            }
+            out[p] = Arrays.copyOf(best, count);
+        }
+        return out;
+    }
+
+    /**
+     * 2-opt on an open path, candidate moves only connect a point with one of its neighbours.
+     * Reversing {@code order[p + 1 .. q]} swaps edges {@code (p, p + 1)} and {@code (q, q + 1)}
+     * for {@code (p, q)} and {@code (p + 1, q + 1)}, the last point has no outgoing edge.
+     */
+    private static void twoOpt(float[] xs, float[] ys, int[] order, int[][] neighbours, long deadline) {
+        int n = order.length;
+        var position = new int[n];
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                if ((i & 255) == 0 && System.nanoTime() >= deadline) {
+                    return;
+                }
+                for (int c : neighbours[order[i]]) {
+                    int j = position[c];
+                    int p = Math.min(i, j), q = Math.max(i, j);
+                    if (q - p < 2) continue;
+                    int from = order[p], next = order[p + 1], to = order[q];
+                    float delta = distance(xs, ys, from, to) - distance(xs, ys, from, next);
+                    if (q + 1 < n) {
+                        int after = order[q + 1];
+                        delta += distance(xs, ys, next, after) - distance(xs, ys, to, after);
+                    }
+                    if (delta < -1e-3f) {
+                        for (int l = p + 1, r = q; l < r; l++, r--) {
+                            int t = order[l];
+                            order[l] = order[r];
+                            order[r] = t;
+                            position[order[l]] = l;
+                            position[order[r]] = r;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy of the image with the positions of every color ordered by their screen points in {@code grid}.
+     *
+     * @param start cursor position before each color, e.g. the color picker
+     */
+    public static PalletedImage reorder(PalletedImage image, TransformableGrid grid, Vector2f start, long budgetNanosPerColor) {
+        var out = new PalletedImage(new Object2ObjectRBTreeMap<>(), image.size());
+        for (var entry : image.palletes().entrySet()) {
+            var result = optimize(entry.getValue(), grid, start, budgetNanosPerColor);
+            out.palletes().put(entry.getKey(), result.apply(entry.getValue()));
+        }
+        return out;
+    }
+
+    /**
+     * Same for a {@link CompactPalletedImage}, each color's run of {@code pixels} is ordered in the copy.
+     */
+    public static CompactPalletedImage reorder(CompactPalletedImage image, TransformableGrid grid, Vector2f start, long budgetNanosPerColor) {
+        var pixels = image.pixels();
+        var ordered = new int[pixels.length];
+        for (int c = 0; c < image.colorCount(); c++) {
+            int from = image.offsets()[c];
+            int n = image.offsets()[c + 1] - from;
+            var xs = new float[n];
+            var ys = new float[n];
+            for (int i = 0; i < n; i++) {
+                int x = image.x(from + i), y = image.y(from + i);
+                xs[i] = grid.screenX(x, y);
+                ys[i] = grid.screenY(x, y);
+            }
+            var order = optimize(xs, ys, start.x, start.y, budgetNanosPerColor).order();
+            for (int i = 0; i < n; i++) {
+                ordered[from + i] = pixels[from + order[i]];
+            }
+        }
+        return new CompactPalletedImage(image.palette(), image.offsets(), ordered, image.size());
+    }
+
+    /**
+     * Order of {@code positions} by their screen points in {@code grid}, see {@link Result#apply}.
+     */
+    public static Result optimize(ObjectArrayList<Vector2i> positions, TransformableGrid grid, Vector2f start, long budgetNanos) {
+        int n = positions.size();
+        var xs = new float[n];
+        var ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            var p = positions.get(i);
+            xs[i] = grid.screenX(p.x, p.y);
+            ys[i] = grid.screenY(p.x, p.y);
+        }
+        return optimize(xs, ys, start.x, start.y, budgetNanos);
+    }
+}
@@ -0,0 +1,65 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+
+/**
+ * Counts the ops of a {@link PaintPlan} and the input events {@link PlanExecutor} will send for them.
+ */
+public class PlanAnalyzer {
+
+    public record Report(int colors, int clicks, int strokes, long strokePoints, long waitNanos, long events) {
+        /**
+         * @param intervalNanos gap between events of the dispatcher
+         */
+        public long nanos(long intervalNanos) {
+            return events * intervalNanos + waitNanos;
+        }
+
+        public String describe(long intervalNanos) {
+            return String.format("Plan: %d colors, %d clicks, %d strokes over %d points, %d events, predicted %s",
+                    colors, clicks, strokes, strokePoints, events, ColorScheduler.duration(nanos(intervalNanos)));
+        }
+    }
+
+    public static Report analyze(PaintPlan plan) {
+        return analyze(plan, false);
+    }
+
+    /**
+     * @param reusePrefix predict {@link PlanExecutor#execute(PaintPlan, InputDispatcher, boolean)} with the same flag
+     */
+    public static Report analyze(PaintPlan plan, boolean reusePrefix) {
+        int[] counts = new int[3];
+        long[] totals = new long[3];
+        plan.accept(new PaintPlan.OpConsumer() {
+            String previous;
+
+            @Override
+            public void color(int argb) {
+                var hex = ColorScheduler.hex(argb);
+                counts[0]++;
+                totals[2] += PlanExecutor.switchEvents(reusePrefix ? previous : null, hex);
+                previous = hex;
+            }
+
+            @Override
+            public void click(int x, int y) {
+                counts[1]++;
+                totals[2] += InputDispatcher.CLICK_EVENTS;
+            }
+
+            @Override
+            public void stroke(int[] xs, int[] ys, int count) {
+                counts[2]++;
+                totals[0] += count;
+                totals[2] += InputDispatcher.dragEvents(count);
+            }
+
+            @Override
+            public void waitNanos(long nanos) {
+                totals[1] += nanos;
+            }
+        });
+        return new Report(counts[0], counts[1], counts[2], totals[0], totals[1], totals[2]);
+    }
+}
@@ -0,0 +1,40 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.TransformableGrid;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import org.joml.Vector2f;
+
+/**
+ * Turns a {@link PalletedImage} and the grid calibration into a {@link PaintPlan}.
+ * Colors come in {@link ColorScheduler} order, cells of a color are painted as strokes or as clicks
+ * ordered by {@link PathOptimizer}, and every point is baked into screen coordinates.
+ */
+public class PlanCompiler {
+
+    public static PaintPlan compile(PalletedImage image, TransformableGrid grid, Vector2f picker) {
+        return compile(new ColorScheduler().schedule(image), grid, new StrokeCompiler(), picker);
+    }
+
+    /**
+     * @param strokes paints runs of a color as drags, {@code null} clicks every cell
+     */
+    public static PaintPlan compile(ColorScheduler.Schedule schedule, TransformableGrid grid, StrokeCompiler strokes, Vector2f picker) {
+        var plan = new PaintPlan((int) picker.x, (int) picker.y);
+        for (var step : schedule.steps()) {
+            plan.color(step.color().getColor());
+            if (strokes == null) {
+                var positions = PathOptimizer.optimize(step.positions(), grid, picker, PathOptimizer.DEFAULT_BUDGET_NANOS)
+                        .apply(step.positions());
+                for (var pos : positions) {
+                    plan.click((int) grid.screenX(pos.x, pos.y), (int) grid.screenY(pos.x, pos.y));
+                }
+            } else {
+                var runs = StrokeCompiler.order(strokes.runs(step.positions()), grid, picker, PathOptimizer.DEFAULT_BUDGET_NANOS);
+                for (var run : runs) {
+                    strokes.emit(plan, run, grid);
+                }
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,130 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Streams a {@link PaintPlan} into an {@link InputDispatcher}. Returns once everything is queued,
+ * call {@link InputDispatcher#flush()} to wait for the events to be sent.
+ */
+public class PlanExecutor {
+    /**
+     * Clicks that open the picker and focus its hex field.
+     */
+    private static final int PICKER_CLICKS = 4;
+    /**
+     * Caret moves to the end of the hex field.
+     */
+    private static final int CARET_KEYS = 8;
+
+    /**
+     * Clears and retypes the whole hex field on every color switch.
+     */
+    public static void execute(PaintPlan plan, InputDispatcher input) throws InterruptedException {
+        execute(plan, input, false);
+    }
+
+    /**
+     * @param reusePrefix only retype what differs from the previous color of the plan. This assumes the picker still
+     *                    holds exactly the hex typed last, nothing checks that, so a field the game normalized or the user
+     *                    touched makes every later color wrong
+     */
+    public static void execute(PaintPlan plan, InputDispatcher input, boolean reusePrefix) throws InterruptedException {
+        try {
+            plan.accept(new PaintPlan.OpConsumer() {
+                String previous;
+
+                @Override
+                public void color(int argb) {
+                    var from = reusePrefix ? previous : null;
+                    queue(() -> switchColor(input, plan.pickerX, plan.pickerY, argb, from));
+                    previous = ColorScheduler.hex(argb);
+                }
+
+                @Override
+                public void click(int x, int y) {
+                    queue(() -> input.click(x, y));
+                }
+
+                @Override
+                public void stroke(int[] xs, int[] ys, int count) {
+                    queue(() -> input.drag(xs, ys, count));
+                }
+
+                @Override
+                public void waitNanos(long nanos) {
+                    queue(() -> input.pause(nanos));
+                }
+            });
+        } catch (Interrupted e) {
+            throw e.cause;
+        }
+    }
+
+    /**
+     * Opens the picker, moves the caret to the end and types the hex of {@code argb}.
+     *
+     * @param previous hex the picker is known to hold, only the part after the common prefix is retyped.
+     *                 {@code null} erases the whole field and retypes everything
+     */
+    public static void switchColor(InputDispatcher input, int pickerX, int pickerY, int argb, String previous) throws InterruptedException {
+        for (int i = 0; i < PICKER_CLICKS; i++) {
+            input.click(pickerX, pickerY);
+        }
+        for (int i = 0; i < CARET_KEYS; i++) {
+            input.key(KeyEvent.VK_RIGHT);
+        }
+        var hex = ColorScheduler.hex(argb);
+        int keep = kept(previous, hex);
+        int erase = erased(previous, hex, keep);
+        input.move(pickerX, pickerY);
+        input.move(pickerX - 5, pickerY);
+        for (int i = 0; i < erase; i++) {
+            input.key(KeyEvent.VK_BACK_SPACE);
+        }
+        input.type(hex.substring(keep));
+    }
+
+    /**
+     * Events {@link #switchColor} sends to switch from {@code previous} to {@code hex}.
+     */
+    public static int switchEvents(String previous, String hex) {
+        int keep = kept(previous, hex);
+        // the 2 are the hover moves before typing
+        return PICKER_CLICKS * InputDispatcher.CLICK_EVENTS + CARET_KEYS * InputDispatcher.KEY_EVENTS + 2
+                + InputDispatcher.KEY_EVENTS * (erased(previous, hex, keep) + hex.length() - keep);
+    }
+
+    private static int kept(String previous, String hex) {
+        return previous == null ? 0 : ColorScheduler.sharedPrefix(previous, hex);
+    }
+
+    private static int erased(String previous, String hex, int keep) {
+        return previous == null ? hex.length() : previous.length() - keep;
+    }
+
+    private interface Submit {
+        void run() throws InterruptedException;
+    }
+
+    private static void queue(Submit submit) {
+        try {
+            submit.run();
+        } catch (InterruptedException e) {
+            throw new Interrupted(e);
+        }
+    }
+
+    /**
+     * Carries an interruption out of {@link PaintPlan#accept}.
+     */
+    private static class Interrupted extends RuntimeException {
+        final InterruptedException cause;
+
+        Interrupted(InterruptedException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.TransformableGrid;
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2f;
+import org.joml.Vector2i;
+
+/**
+ * Covers the cells of one color with straight horizontal and vertical runs, each painted as a single
+ * press, drag, release instead of one click per cell. Runs are taken longest first: every maximal run of the
+ * color goes into a bucket by length, and a run whose cells were partly taken by a longer one falls back into a
+ * lower bucket as its free pieces. Cells left over, or in runs shorter than {@link #minRun}, stay plain clicks.
+ * The grid is a projective transform, so a run is a straight line on screen too.
+ */
+public class StrokeCompiler {
+    /**
+     * Runs shorter than this are painted as clicks, {@code 2} keeps clicks only for isolated pixels.
+     */
+    public int minRun = 2;
+    /**
+     * Cells between the moves of a drag, {@code 1} visits every cell center. Larger steps send fewer events
+     * but rely on the target filling the gaps between move events.
+     */
+    public int step = 1;
+
+    /**
+     * Cells from {@code (x0, y0)} to {@code (x1, y1)} inclusive, both ends equal for a click.
+     */
+    public record Run(int x0, int y0, int x1, int y1) {
+        public int length() {
+            return Math.abs(x1 - x0) + Math.abs(y1 - y0) + 1;
+        }
+
+        public boolean isClick() {
+            return x0 == x1 && y0 == y1;
+        }
+    }
+
+    public ObjectArrayList<Run> runs(ObjectArrayList<Vector2i> cells) {
+        var out = new ObjectArrayList<Run>();
+        if (cells.isEmpty()) {
+            return out;
+        }
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (var cell : cells) {
+            minX = Math.min(minX, cell.x);
+            minY = Math.min(minY, cell.y);
+            maxX = Math.max(maxX, cell.x);
+            maxY = Math.max(maxY, cell.y);
+        }
+        int w = maxX - minX + 1, h = maxY - minY + 1;
+        var mask = new boolean[w * h];
+        for (var cell : cells) {
+            mask[(cell.y - minY) * w + cell.x - minX] = true;
+        }
+        var taken = new boolean[w * h];
+
+        // buckets by length, a run is {start, length, stride}
+        int maxLength = Math.max(w, h);
+        @SuppressWarnings("unchecked")
+        ObjectArrayList<int[]>[] buckets = new ObjectArrayList[maxLength + 1];
+        for (int y = 0; y < h; y++) {
+            addRuns(mask, y * w, 1, w, buckets);
+        }
+        for (int x = 0; x < w; x++) {
+            addRuns(mask, x, w, h, buckets);
+        }
+        for (int length = maxLength; length >= Math.max(2, minRun); length--) {
+            var bucket = buckets[length];
+            if (bucket == null) continue;
+            for (int k = 0; k < bucket.size(); k++) {
+                var run = bucket.get(k);
+                int start = run[0], stride = run[2];
+                // free pieces of the run, only a piece of the full length can be claimed from this bucket
+                int pieceStart = -1;
+                for (int i = 0; i <= run[1]; i++) {
+                    boolean free = i < run[1] && !taken[start + i * stride];
+                    if (free && pieceStart == -1) {
+                        pieceStart = i;
+                    } else if (!free && pieceStart != -1) {
+                        int pieceLength = i - pieceStart;
+                        int from = start + pieceStart * stride;
+                        if (pieceLength == length) {
+                            int to = from + (pieceLength - 1) * stride;
+                            for (int c = from; c <= to; c += stride) {
+                                taken[c] = true;
+                            }
+                            out.add(new Run(from % w + minX, from / w + minY, to % w + minX, to / w + minY));
+                        } else if (pieceLength >= minRun) {
+                            bucket(buckets, pieceLength).add(new int[]{from, pieceLength, stride});
+                        }
+                        pieceStart = -1;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < mask.length; i++) {
+            if (mask[i] && !taken[i]) {
+                out.add(new Run(i % w + minX, i / w + minY, i % w + minX, i / w + minY));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adds the maximal runs of set cells along one line of {@code length} cells.
+     */
+    private static void addRuns(boolean[] mask, int start, int stride, int length, ObjectArrayList<int[]>[] buckets) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean set = i < length && mask[start + i * stride];
+            if (set && runStart == -1) {
+                runStart = i;
+            } else if (!set && runStart != -1) {
+                if (i - runStart >= 2) {
+                    bucket(buckets, i - runStart).add(new int[]{start + runStart * stride, i - runStart, stride});
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private static ObjectArrayList<int[]> bucket(ObjectArrayList<int[]>[] buckets, int length) {
+        if (buckets[length] == null) {
+            buckets[length] = new ObjectArrayList<>();
+        }
+        return buckets[length];
+    }
+
+    /**
+     * Copy of {@code runs} ordered by the screen point of their middle, see {@link PathOptimizer}.
+     */
+    public static ObjectArrayList<Run> order(ObjectArrayList<Run> runs, TransformableGrid grid, Vector2f start, long budgetNanos) {
+        int n = runs.size();
+        var xs = new float[n];
+        var ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            var run = runs.get(i);
+            xs[i] = (grid.screenX(run.x0(), run.y0()) + grid.screenX(run.x1(), run.y1())) / 2;
+            ys[i] = (grid.screenY(run.x0(), run.y0()) + grid.screenY(run.x1(), run.y1())) / 2;
+        }
+        return PathOptimizer.optimize(xs, ys, start.x, start.y, budgetNanos).apply(runs);
+    }
+
+    /**
+     * Cells of the run a drag moves through, every {@link #step} cells plus the last one.
+     */
+    public int points(Run run) {
+        int length = run.length();
+        return (length - 1 + step - 1) / step + 1;
+    }
+
+    public int events(Run run) {
+        return run.isClick() ? InputDispatcher.CLICK_EVENTS : InputDispatcher.dragEvents(points(run));
+    }
+
+    public long events(ObjectArrayList<Run> runs) {
+        long events = 0;
+        for (var run : runs) {
+            events += events(run);
+        }
+        return events;
+    }
+
+    /**
+     * Appends the run to the plan, a click for single cells and a stroke otherwise.
+     */
+    public void emit(PaintPlan plan, Run run, TransformableGrid grid) {
+        if (run.isClick()) {
+            plan.click((int) grid.screenX(run.x0(), run.y0()), (int) grid.screenY(run.x0(), run.y0()));
+            return;
+        }
+        int count = points(run);
+        var xs = new int[count];
+        var ys = new int[count];
+        int dx = Integer.signum(run.x1() - run.x0()), dy = Integer.signum(run.y1() - run.y0());
+        for (int i = 0; i < count; i++) {
+            int t = Math.min(i * step, run.length() - 1);
+            int x = run.x0() + dx * t, y = run.y0() + dy * t;
+            xs[i] = (int) grid.screenX(x, y);
+            ys[i] = (int) grid.screenY(x, y);
+        }
+        plan.stroke(xs, ys, count);
+    }
+}
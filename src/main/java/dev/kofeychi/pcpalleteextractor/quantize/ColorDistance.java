@@ -0,0 +1,25 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * Space in which {@link NearestColorIndex} measures squared Euclidean distance.
+ */
+public enum ColorDistance {
+    RGB,
+    /**
+     * Perceptually uniform, matches dark and saturated colors much better than {@link #RGB}.
+     */
+    OKLAB;
+
+    /**
+     * Writes the coordinates of {@code rgb} in this space into {@code out[offset .. offset + 2]}.
+     */
+    public void coords(int rgb, float[] out, int offset) {
+        if (this == OKLAB) {
+            OkLab.toLab(rgb, out, offset);
+        } else {
+            out[offset] = rgb >> 16 & 0xFF;
+            out[offset + 1] = rgb >> 8 & 0xFF;
+            out[offset + 2] = rgb & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.Arrays;
+
+/**
+ * Maps image rows to a palette, optionally dithering them.
+ * Error diffusion keeps only the error rows it still has to spread into (two for Floyd-Steinberg,
+ * three for Atkinson), so memory stays O(width) whatever the image height.
+ * Rows have to be fed top to bottom, except for {@link Mode#BAYER} and {@link Mode#NONE}
+ * which keep no state between rows and can map stripes of rows in parallel.
+ */
+public class Ditherer {
+
+    public enum Mode {
+        NONE(0),
+        FLOYD_STEINBERG(2),
+        ATKINSON(3),
+        BAYER(0);
+
+        private final int errorRows;
+
+        Mode(int errorRows) {
+            this.errorRows = errorRows;
+        }
+
+        /**
+         * @return whether rows can be mapped independently of each other
+         */
+        public boolean isStateless() {
+            return errorRows == 0;
+        }
+    }
+
+    private static final int PAD = 2;
+    private static final int[] BAYER_8 = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    private final Mode mode;
+    private final NearestColorIndex index;
+    private final int width;
+    /**
+     * Error rows, {@code errors[0]} belongs to the row being mapped. Each holds r, g, b per pixel with {@link #PAD} pixels on both sides.
+     */
+    private final float[][] errors;
+    private final float bayerSpread;
+
+    public Ditherer(Mode mode, NearestColorIndex index, int width) {
+        this.mode = mode;
+        this.index = index;
+        this.width = width;
+        this.errors = new float[mode.errorRows][(width + 2 * PAD) * 3];
+        // roughly the distance between neighbouring palette entries along one channel
+        this.bayerSpread = 255f / (float) Math.max(1, Math.cbrt(index.palette().length));
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Maps row {@code y} from {@code src[srcOffset ..]} into {@code dst[dstOffset ..]}.
+     * Alpha is kept, fully transparent pixels are copied as is.
+     */
+    public void mapRow(int[] src, int srcOffset, int[] dst, int dstOffset, int y) {
+        switch (mode) {
+            case NONE -> mapPlain(src, srcOffset, dst, dstOffset);
+            case BAYER -> mapBayer(src, srcOffset, dst, dstOffset, y);
+            default -> mapDiffused(src, srcOffset, dst, dstOffset);
+        }
+    }
+
+    private void mapPlain(int[] src, int srcOffset, int[] dst, int dstOffset) {
+        int lastRgb = -1;
+        int lastNearest = 0;
+        for (int x = 0; x < width; x++) {
+            int argb = src[srcOffset + x];
+            if ((argb >>> 24) == 0) {
+                dst[dstOffset + x] = argb;
+                continue;
+            }
+            int rgb = argb & 0xFFFFFF;
+            if (rgb != lastRgb) {
+                lastRgb = rgb;
+                lastNearest = index.nearest(rgb);
+            }
+            dst[dstOffset + x] = (argb & 0xFF000000) | (lastNearest & 0xFFFFFF);
+        }
+    }
+
+    private void mapBayer(int[] src, int srcOffset, int[] dst, int dstOffset, int y) {
+        int row = (y & 7) * 8;
+        for (int x = 0; x < width; x++) {
+            int argb = src[srcOffset + x];
+            if ((argb >>> 24) == 0) {
+                dst[dstOffset + x] = argb;
+                continue;
+            }
+            float offset = bayerSpread * ((BAYER_8[row + (x & 7)] + 0.5f) / 64f - 0.5f);
+            int r = clamp((argb >> 16 & 0xFF) + offset);
+            int g = clamp((argb >> 8 & 0xFF) + offset);
+            int b = clamp((argb & 0xFF) + offset);
+            dst[dstOffset + x] = (argb & 0xFF000000) | (index.nearest(r << 16 | g << 8 | b) & 0xFFFFFF);
+        }
+    }
+
+    private void mapDiffused(int[] src, int srcOffset, int[] dst, int dstOffset) {
+        float[] current = errors[0];
+        for (int x = 0; x < width; x++) {
+            int argb = src[srcOffset + x];
+            if ((argb >>> 24) == 0) {
+                dst[dstOffset + x] = argb;
+                continue;
+            }
+            int e = (x + PAD) * 3;
+            int r = clamp((argb >> 16 & 0xFF) + current[e]);
+            int g = clamp((argb >> 8 & 0xFF) + current[e + 1]);
+            int b = clamp((argb & 0xFF) + current[e + 2]);
+            int q = index.nearest(r << 16 | g << 8 | b);
+            dst[dstOffset + x] = (argb & 0xFF000000) | (q & 0xFFFFFF);
+            float er = r - (q >> 16 & 0xFF);
+            float eg = g - (q >> 8 & 0xFF);
+            float eb = b - (q & 0xFF);
+            if (mode == Mode.FLOYD_STEINBERG) {
+                spread(0, x + 1, er, eg, eb, 7 / 16f);
+                spread(1, x - 1, er, eg, eb, 3 / 16f);
+                spread(1, x, er, eg, eb, 5 / 16f);
+                spread(1, x + 1, er, eg, eb, 1 / 16f);
+            } else {
+                spread(0, x + 1, er, eg, eb, 1 / 8f);
+                spread(0, x + 2, er, eg, eb, 1 / 8f);
+                spread(1, x - 1, er, eg, eb, 1 / 8f);
+                spread(1, x, er, eg, eb, 1 / 8f);
+                spread(1, x + 1, er, eg, eb, 1 / 8f);
+                spread(2, x, er, eg, eb, 1 / 8f);
+            }
+        }
+        // rotate: the next row's errors become current, the consumed row is cleared and reused last
+        for (int i = 1; i < errors.length; i++) {
+            errors[i - 1] = errors[i];
+        }
+        Arrays.fill(current, 0);
+        errors[errors.length - 1] = current;
+    }
+
+    private void spread(int row, int x, float er, float eg, float eb, float weight) {
+        var target = errors[row];
+        int e = (x + PAD) * 3;
+        target[e] += er * weight;
+        target[e + 1] += eg * weight;
+        target[e + 2] += eb * weight;
+    }
+
+    private static int clamp(float v) {
+        int i = Math.round(v);
+        return i < 0 ? 0 : Math.min(i, 255);
+    }
+}
@@ -0,0 +1,101 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.Arrays;
+
+/**
+ * Inverse colormap: the RGB cube is split into {@code 32^3} cells and every cell keeps the palette
+ * entries that can be the nearest one for some color inside it. An entry is a candidate when its
+ * minimum distance to the cell is not larger than the smallest maximum distance of any entry,
+ * so scanning the candidates gives the exact answer.
+ */
+public class InverseColormap implements NearestColorIndex {
+    public static final int BITS = 5;
+    private static final int SIDE = 1 << BITS;
+    private static final int SHIFT = 8 - BITS;
+    private static final int CELL = 1 << SHIFT;
+
+    private final int[] palette;
+    private final int[] offsets = new int[SIDE * SIDE * SIDE + 1];
+    private final int[] candidates;
+
+    public InverseColormap(int[] palette) {
+        this.palette = palette;
+        int n = palette.length;
+        var pr = new int[n];
+        var pg = new int[n];
+        var pb = new int[n];
+        for (int i = 0; i < n; i++) {
+            pr[i] = palette[i] >> 16 & 0xFF;
+            pg[i] = palette[i] >> 8 & 0xFF;
+            pb[i] = palette[i] & 0xFF;
+        }
+        var minDist = new int[n];
+        var out = new int[Math.max(16, SIDE * SIDE * SIDE * Math.min(n, 4))];
+        int size = 0;
+        for (int cell = 0; cell < SIDE * SIDE * SIDE; cell++) {
+            int r0 = (cell >> (2 * BITS)) << SHIFT;
+            int g0 = (cell >> BITS & (SIDE - 1)) << SHIFT;
+            int b0 = (cell & (SIDE - 1)) << SHIFT;
+            int bound = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                minDist[i] = axisMin(pr[i], r0) + axisMin(pg[i], g0) + axisMin(pb[i], b0);
+                int max = axisMax(pr[i], r0) + axisMax(pg[i], g0) + axisMax(pb[i], b0);
+                if (max < bound) bound = max;
+            }
+            offsets[cell] = size;
+            for (int i = 0; i < n; i++) {
+                if (minDist[i] <= bound) {
+                    if (size == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    out[size++] = i;
+                }
+            }
+        }
+        offsets[SIDE * SIDE * SIDE] = size;
+        candidates = Arrays.copyOf(out, size);
+    }
+
+    private static int axisMin(int p, int lo) {
+        int d = p < lo ? lo - p : p > lo + CELL - 1 ? p - (lo + CELL - 1) : 0;
+        return d * d;
+    }
+
+    private static int axisMax(int p, int lo) {
+        int d = Math.max(Math.abs(p - lo), Math.abs(p - (lo + CELL - 1)));
+        return d * d;
+    }
+
+    @Override
+    public int[] palette() {
+        return palette;
+    }
+
+    @Override
+    public int nearestIndex(int rgb) {
+        int r = rgb >> 16 & 0xFF;
+        int g = rgb >> 8 & 0xFF;
+        int b = rgb & 0xFF;
+        int cell = (r >> SHIFT) << (2 * BITS) | (g >> SHIFT) << BITS | (b >> SHIFT);
+        int from = offsets[cell];
+        int to = offsets[cell + 1];
+        if (to - from == 1) {
+            return candidates[from];
+        }
+        int best = Integer.MAX_VALUE;
+        int closest = candidates[from];
+        for (int k = from; k < to; k++) {
+            int i = candidates[k];
+            int color = palette[i];
+            int dr = r - (color >> 16 & 0xFF);
+            int dg = g - (color >> 8 & 0xFF);
+            int db = b - (color & 0xFF);
+            int dist = dr * dr + dg * dg + db * db;
+            if (dist < best) {
+                best = dist;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+}
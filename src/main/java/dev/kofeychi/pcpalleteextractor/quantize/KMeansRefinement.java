@@ -0,0 +1,76 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.Arrays;
+
+/**
+ * Lloyd's k-means over the histogram bins, seeded with the palette of another quantizer.
+ * Every round assigns each bin to its nearest entry and moves the entries to the weighted centroid
+ * of their bins, it stops early once no entry moves.
+ */
+public class KMeansRefinement implements Quantizer {
+    private final Quantizer seed;
+    private final int iterations;
+
+    public KMeansRefinement(Quantizer seed, int iterations) {
+        this.seed = seed;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String name() {
+        return seed.name() + " + k-means";
+    }
+
+    @Override
+    public int[] quantize(RgbHistogram histogram, int maxColors) {
+        Quantizer.checkColorCount(maxColors);
+        var palette = seed.quantize(histogram, maxColors);
+        if (palette.length == 0) {
+            return palette;
+        }
+        int occupied = 0;
+        for (int bin = 0; bin < RgbHistogram.BINS; bin++) {
+            if (histogram.counts[bin] > 0) occupied++;
+        }
+        var bins = new int[occupied];
+        var means = new int[occupied];
+        for (int bin = 0, k = 0; bin < RgbHistogram.BINS; bin++) {
+            if (histogram.counts[bin] > 0) {
+                bins[k] = bin;
+                means[k++] = histogram.mean(bin);
+            }
+        }
+
+        var sumR = new long[palette.length];
+        var sumG = new long[palette.length];
+        var sumB = new long[palette.length];
+        var count = new long[palette.length];
+        for (int round = 0; round < iterations; round++) {
+            var index = NearestColorIndex.create(NearestColorIndex.Mode.KD_TREE, palette);
+            Arrays.fill(sumR, 0);
+            Arrays.fill(sumG, 0);
+            Arrays.fill(sumB, 0);
+            Arrays.fill(count, 0);
+            for (int k = 0; k < bins.length; k++) {
+                int j = index.nearestIndex(means[k]);
+                int bin = bins[k];
+                sumR[j] += histogram.sumR[bin];
+                sumG[j] += histogram.sumG[bin];
+                sumB[j] += histogram.sumB[bin];
+                count[j] += histogram.counts[bin];
+            }
+            boolean moved = false;
+            var next = new int[palette.length];
+            for (int j = 0; j < palette.length; j++) {
+                next[j] = count[j] == 0 ? palette[j]
+                        : 0xFF000000 | (int) (sumR[j] / count[j]) << 16 | (int) (sumG[j] / count[j]) << 8 | (int) (sumB[j] / count[j]);
+                moved |= next[j] != palette[j];
+            }
+            palette = next;
+            if (!moved) {
+                break;
+            }
+        }
+        return palette;
+    }
+}
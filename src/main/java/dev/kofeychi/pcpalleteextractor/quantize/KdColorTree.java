@@ -0,0 +1,137 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * Balanced k-d tree over the palette in the coordinates of a {@link ColorDistance}, stored implicitly: the node of a range is its middle element,
+ * its children are the halves on either side.
+ */
+public class KdColorTree implements NearestColorIndex {
+    private final int[] palette;
+    /**
+     * Palette indices in tree order.
+     */
+    private final int[] order;
+    private final float[] coords;
+    private final byte[] axes;
+
+    private final ColorDistance distance;
+
+    public KdColorTree(int[] palette) {
+        this(palette, ColorDistance.RGB);
+    }
+
+    public KdColorTree(int[] palette, ColorDistance distance) {
+        this.palette = palette;
+        this.distance = distance;
+        int n = palette.length;
+        order = new int[n];
+        coords = new float[n * 3];
+        axes = new byte[n];
+        var points = new float[n * 3];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            distance.coords(palette[i], points, i * 3);
+        }
+        build(points, 0, n);
+        for (int k = 0; k < n; k++) {
+            System.arraycopy(points, order[k] * 3, coords, k * 3, 3);
+        }
+    }
+
+    private void build(float[] points, int from, int to) {
+        if (to - from <= 1) {
+            return;
+        }
+        // split on the axis with the widest spread
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int k = from; k < to; k++) {
+            for (int a = 0; a < 3; a++) {
+                float v = points[order[k] * 3 + a];
+                min[a] = Math.min(min[a], v);
+                max[a] = Math.max(max[a], v);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis]) axis = a;
+        }
+        int mid = (from + to) >>> 1;
+        select(points, from, to - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(points, from, mid);
+        build(points, mid + 1, to);
+    }
+
+    /**
+     * Quickselect on {@link #order} so the {@code k}-th element is in place along {@code axis}.
+     */
+    private void select(float[] points, int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            float pivot = points[order[(lo + hi) >>> 1] * 3 + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (points[order[i] * 3 + axis] < pivot) i++;
+                while (points[order[j] * 3 + axis] > pivot) j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    @Override
+    public int[] palette() {
+        return palette;
+    }
+
+    @Override
+    public int nearestIndex(int rgb) {
+        if (distance == ColorDistance.RGB) {
+            return nearestIndex(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF);
+        }
+        // OKLAB, the only other space
+        float l = OkLab.coneL(rgb), m = OkLab.coneM(rgb), s = OkLab.coneS(rgb);
+        return nearestIndex(OkLab.lightness(l, m, s), OkLab.greenRed(l, m, s), OkLab.blueYellow(l, m, s));
+    }
+
+    public int nearestIndex(float x, float y, float z) {
+        return (int) search(0, order.length, x, y, z, Long.MAX_VALUE);
+    }
+
+    /**
+     * The best match so far is packed as {@code floatBits(distance) << 32 | index}; distances are
+     * never negative, so comparing the packed longs orders by distance first and palette index second.
+     */
+    private long search(int from, int to, float x, float y, float z, long best) {
+        if (from >= to) {
+            return best;
+        }
+        int mid = (from + to) >>> 1;
+        float dx = x - coords[mid * 3];
+        float dy = y - coords[mid * 3 + 1];
+        float dz = z - coords[mid * 3 + 2];
+        long candidate = (long) Float.floatToRawIntBits(dx * dx + dy * dy + dz * dz) << 32 | order[mid];
+        if (candidate < best) {
+            best = candidate;
+        }
+        float diff = switch (axes[mid]) {
+            case 0 -> dx;
+            case 1 -> dy;
+            default -> dz;
+        };
+        boolean left = diff < 0;
+        best = search(left ? from : mid + 1, left ? mid : to, x, y, z, best);
+        // ties may sit exactly on the splitting plane, hence <=
+        if (diff * diff <= Float.intBitsToFloat((int) (best >>> 32))) {
+            best = search(left ? mid + 1 : from, left ? to : mid, x, y, z, best);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,48 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+public class LinearColorIndex implements NearestColorIndex {
+    private final int[] palette;
+
+    public LinearColorIndex(int[] palette) {
+        this.palette = palette;
+    }
+
+    @Override
+    public int[] palette() {
+        return palette;
+    }
+
+    @Override
+    public int nearestIndex(int rgb) {
+        return nearestIndex(rgb, palette);
+    }
+
+    /**
+     * Finds the closest color in the palette using Euclidean distance in RGB space.
+     */
+    public static int nearestIndex(int target, int[] palette) {
+        int r = (target >> 16) & 0xFF;
+        int g = (target >> 8) & 0xFF;
+        int b = target & 0xFF;
+
+        int minDistance = Integer.MAX_VALUE;
+        int closest = 0;
+
+        for (int i = 0; i < palette.length; i++) {
+            int color = palette[i];
+            int dr = r - ((color >> 16) & 0xFF);
+            int dg = g - ((color >> 8) & 0xFF);
+            int db = b - (color & 0xFF);
+            // Euclidean distance squared (no need for sqrt for comparison)
+            int dist = dr * dr + dg * dg + db * db;
+
+            if (dist < minDistance) {
+                minDistance = dist;
+                closest = i;
+                // Optimization: Exact match
+                if (dist == 0) return closest;
+            }
+        }
+        return closest;
+    }
+}
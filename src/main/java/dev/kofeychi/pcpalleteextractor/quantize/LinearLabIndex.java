@@ -0,0 +1,51 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * Linear scan in OKLab, the palette is converted once and kept as separate L/a/b arrays.
+ */
+public class LinearLabIndex implements NearestColorIndex {
+    private final int[] palette;
+    private final float[] l;
+    private final float[] a;
+    private final float[] b;
+
+    public LinearLabIndex(int[] palette) {
+        this.palette = palette;
+        l = new float[palette.length];
+        a = new float[palette.length];
+        b = new float[palette.length];
+        var lab = new float[3];
+        for (int i = 0; i < palette.length; i++) {
+            OkLab.toLab(palette[i], lab, 0);
+            l[i] = lab[0];
+            a[i] = lab[1];
+            b[i] = lab[2];
+        }
+    }
+
+    @Override
+    public int[] palette() {
+        return palette;
+    }
+
+    @Override
+    public int nearestIndex(int rgb) {
+        float cl = OkLab.coneL(rgb), cm = OkLab.coneM(rgb), cs = OkLab.coneS(rgb);
+        float ql = OkLab.lightness(cl, cm, cs);
+        float qa = OkLab.greenRed(cl, cm, cs);
+        float qb = OkLab.blueYellow(cl, cm, cs);
+        float best = Float.MAX_VALUE;
+        int closest = 0;
+        for (int i = 0; i < palette.length; i++) {
+            float dl = ql - l[i];
+            float da = qa - a[i];
+            float db = qb - b[i];
+            float dist = dl * dl + da * da + db * db;
+            if (dist < best) {
+                best = dist;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+}
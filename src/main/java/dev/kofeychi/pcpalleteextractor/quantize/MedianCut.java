@@ -0,0 +1,189 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.PriorityQueue;
+
+import static dev.kofeychi.pcpalleteextractor.quantize.RgbHistogram.SIDE;
+import static dev.kofeychi.pcpalleteextractor.quantize.RgbHistogram.index;
+
+/**
+ * Median cut over an {@link RgbHistogram}.
+ * Boxes are ranges of histogram bins, the median is found with prefix sums of the bin counts,
+ * so the cost depends on the number of bins and not on the number of pixels.
+ * A box of one bin can't be split, so when the histogram has no more colors than asked for they are returned exactly.
+ */
+public class MedianCut implements Quantizer {
+
+    @Override
+    public String name() {
+        return "median cut";
+    }
+
+    @Override
+    public int[] quantize(RgbHistogram histogram, int maxColors) {
+        return palette(histogram, maxColors);
+    }
+
+    public static int[] palette(RgbHistogram histogram, int maxColors) {
+        Quantizer.checkColorCount(maxColors);
+        var exact = histogram.exactColors();
+        if (exact != null && exact.length <= maxColors) {
+            return exact;
+        }
+        PriorityQueue<Box> queue = new PriorityQueue<>();
+        var planes = new long[SIDE];
+
+        var root = new Box(0, SIDE - 1, 0, SIDE - 1, 0, SIDE - 1);
+        root.shrink(histogram);
+        if (root.count == 0) {
+            return new int[0];
+        }
+        queue.add(root);
+
+        // Split boxes until we reach the desired count or cannot split further
+        while (queue.size() < maxColors) {
+            Box largest = queue.poll();
+            if (largest == null || !largest.canSplit()) {
+                if (largest != null) queue.add(largest);
+                break;
+            }
+            var split = largest.split(histogram, planes);
+            queue.add(split[0]);
+            queue.add(split[1]);
+        }
+
+        var palette = new int[queue.size()];
+        int i = 0;
+        for (Box box : queue) {
+            palette[i++] = box.average(histogram);
+        }
+        return palette;
+    }
+
+    /**
+     * Inclusive range of bins in every channel.
+     */
+    private static class Box implements Comparable<Box> {
+        int r0, r1, g0, g1, b0, b1;
+        long count;
+
+        Box(int r0, int r1, int g0, int g1, int b0, int b1) {
+            this.r0 = r0;
+            this.r1 = r1;
+            this.g0 = g0;
+            this.g1 = g1;
+            this.b0 = b0;
+            this.b1 = b1;
+        }
+
+        /**
+         * Tightens the box to its occupied bins and recounts its pixels.
+         */
+        void shrink(RgbHistogram h) {
+            int nr0 = SIDE, nr1 = -1, ng0 = SIDE, ng1 = -1, nb0 = SIDE, nb1 = -1;
+            long n = 0;
+            for (int r = r0; r <= r1; r++) {
+                for (int g = g0; g <= g1; g++) {
+                    for (int b = b0; b <= b1; b++) {
+                        int c = h.counts[index(r, g, b)];
+                        if (c == 0) continue;
+                        n += c;
+                        if (r < nr0) nr0 = r;
+                        if (r > nr1) nr1 = r;
+                        if (g < ng0) ng0 = g;
+                        if (g > ng1) ng1 = g;
+                        if (b < nb0) nb0 = b;
+                        if (b > nb1) nb1 = b;
+                    }
+                }
+            }
+            count = n;
+            if (n > 0) {
+                r0 = nr0; r1 = nr1;
+                g0 = ng0; g1 = ng1;
+                b0 = nb0; b1 = nb1;
+            }
+        }
+
+        int volume() {
+            return (r1 - r0 + 1) * (g1 - g0 + 1) * (b1 - b0 + 1);
+        }
+
+        @Override
+        public int compareTo(Box other) {
+            return Integer.compare(other.volume(), this.volume());
+        }
+
+        boolean canSplit() {
+            return volume() > 1;
+        }
+
+        /**
+         * Splits along the longest dimension at the bin where the cumulative count reaches half of the box.
+         */
+        Box[] split(RgbHistogram h, long[] planes) {
+            int rRange = r1 - r0;
+            int gRange = g1 - g0;
+            int bRange = b1 - b0;
+            int channel; // 0=R, 1=G, 2=B
+            int lo, hi;
+            if (rRange >= gRange && rRange >= bRange) {
+                channel = 0; lo = r0; hi = r1;
+            } else if (gRange >= bRange) {
+                channel = 1; lo = g0; hi = g1;
+            } else {
+                channel = 2; lo = b0; hi = b1;
+            }
+
+            for (int i = lo; i <= hi; i++) {
+                planes[i] = 0;
+            }
+            for (int r = r0; r <= r1; r++) {
+                for (int g = g0; g <= g1; g++) {
+                    for (int b = b0; b <= b1; b++) {
+                        int c = h.counts[index(r, g, b)];
+                        planes[channel == 0 ? r : channel == 1 ? g : b] += c;
+                    }
+                }
+            }
+
+            long half = count / 2;
+            long acc = 0;
+            int cut = lo;
+            for (int i = lo; i < hi; i++) {
+                acc += planes[i];
+                cut = i;
+                if (acc >= half) break;
+            }
+
+            var first = new Box(r0, r1, g0, g1, b0, b1);
+            var second = new Box(r0, r1, g0, g1, b0, b1);
+            switch (channel) {
+                case 0 -> { first.r1 = cut; second.r0 = cut + 1; }
+                case 1 -> { first.g1 = cut; second.g0 = cut + 1; }
+                default -> { first.b1 = cut; second.b0 = cut + 1; }
+            }
+            first.shrink(h);
+            second.shrink(h);
+            return new Box[]{first, second};
+        }
+
+        /**
+         * Count-weighted average color of the box.
+         */
+        int average(RgbHistogram h) {
+            long sumR = 0, sumG = 0, sumB = 0;
+            for (int r = r0; r <= r1; r++) {
+                for (int g = g0; g <= g1; g++) {
+                    for (int b = b0; b <= b1; b++) {
+                        int i = index(r, g, b);
+                        sumR += h.sumR[i];
+                        sumG += h.sumG[i];
+                        sumB += h.sumB[i];
+                    }
+                }
+            }
+            if (count == 0) return 0;
+            return (0xFF << 24) | (int) (sumR / count) << 16 | (int) (sumG / count) << 8 | (int) (sumB / count);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * Nearest palette entry lookup by squared distance in a {@link ColorDistance} space.
+ * For a given space all modes return the same entry, ties go to the lowest palette index.
+ * Indexes don't change after construction, one instance can serve any number of threads.
+ */
+public interface NearestColorIndex {
+
+    enum Mode {
+        /**
+         * Scan of the whole palette, no setup cost.
+         */
+        LINEAR,
+        /**
+         * 32x32x32 lookup table of candidate entries per cell, refined exactly by a scan of the candidates.
+         */
+        INVERSE_COLORMAP,
+        /**
+         * k-d tree over the palette.
+         */
+        KD_TREE,
+        /**
+         * Palette scan with the Vector API, {@link #LINEAR} when {@code jdk.incubator.vector} isn't enabled.
+         */
+        VECTOR
+    }
+
+    int[] palette();
+
+    /**
+     * @return index of the palette entry closest to {@code rgb}, alpha is ignored
+     */
+    int nearestIndex(int rgb);
+
+    default int nearest(int rgb) {
+        return palette()[nearestIndex(rgb)];
+    }
+
+    static NearestColorIndex create(Mode mode, int[] palette) {
+        return create(mode, palette, ColorDistance.RGB);
+    }
+
+    /**
+     * The inverse colormap bounds candidates by RGB cell distances, so for {@link ColorDistance#OKLAB}
+     * {@link Mode#INVERSE_COLORMAP} is served by the k-d tree, and {@link Mode#VECTOR} by a plain scan.
+     */
+    static NearestColorIndex create(Mode mode, int[] palette, ColorDistance distance) {
+        if (palette.length == 0) {
+            throw new IllegalArgumentException("Palette cannot be empty");
+        }
+        if (distance == ColorDistance.OKLAB) {
+            return mode == Mode.LINEAR || mode == Mode.VECTOR ? new LinearLabIndex(palette) : new KdColorTree(palette, distance);
+        }
+        return switch (mode) {
+            case LINEAR -> new LinearColorIndex(palette);
+            case INVERSE_COLORMAP -> new InverseColormap(palette);
+            case KD_TREE -> new KdColorTree(palette);
+            case VECTOR -> vector(palette);
+        };
+    }
+
+    /**
+     * Checked before the vector index is loaded, loading it without the module fails.
+     */
+    boolean VECTOR_SUPPORTED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * The vector index is compiled in its own source set so the rest of the code doesn't need the incubator module,
+     * it is only looked up by name.
+     */
+    private static NearestColorIndex vector(int[] palette) {
+        if (VECTOR_SUPPORTED) {
+            try {
+                return (NearestColorIndex) Class.forName("dev.kofeychi.pcpalleteextractor.quantize.VectorColorIndex")
+                        .getConstructor(int[].class).newInstance(palette);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // built without the vector source set
+            }
+        }
+        return new LinearColorIndex(palette);
+    }
+}
@@ -0,0 +1,153 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.ArrayList;
+
+/**
+ * Gervautz-Purgathofer octree quantizer.
+ * {@link Tree} can be fed pixel by pixel, it never holds more than {@code maxColors} leaves
+ * plus their parents, so images can be streamed through it without keeping the pixels around.
+ */
+public class OctreeQuantizer implements Quantizer {
+    public static final int DEPTH = 8;
+
+    @Override
+    public String name() {
+        return "octree";
+    }
+
+    @Override
+    public int[] quantize(RgbHistogram histogram, int maxColors) {
+        var tree = new Tree(maxColors);
+        for (int bin = 0; bin < RgbHistogram.BINS; bin++) {
+            int n = histogram.counts[bin];
+            if (n > 0) {
+                tree.add(histogram.sumR[bin], histogram.sumG[bin], histogram.sumB[bin], n, histogram.mean(bin));
+            }
+        }
+        return tree.palette();
+    }
+
+    private static class Node {
+        long sumR, sumG, sumB, count;
+        Node[] children;
+        boolean leaf;
+    }
+
+    public static class Tree {
+        private final int maxColors;
+        private final Node root = new Node();
+        @SuppressWarnings("unchecked")
+        private final ArrayList<Node>[] reducible = new ArrayList[DEPTH];
+        private int leaves;
+
+        public Tree(int maxColors) {
+            Quantizer.checkColorCount(maxColors);
+            this.maxColors = maxColors;
+            for (int i = 0; i < DEPTH; i++) {
+                reducible[i] = new ArrayList<>();
+            }
+        }
+
+        /**
+         * Adds one pixel, fully transparent pixels are ignored.
+         */
+        public void add(int argb) {
+            if ((argb >>> 24) == 0) {
+                return;
+            }
+            add(argb >> 16 & 0xFF, argb >> 8 & 0xFF, argb & 0xFF, 1, argb);
+        }
+
+        /**
+         * Adds {@code count} pixels with the given channel sums, {@code key} decides their position in the tree.
+         */
+        void add(long sumR, long sumG, long sumB, long count, int key) {
+            int r = key >> 16 & 0xFF;
+            int g = key >> 8 & 0xFF;
+            int b = key & 0xFF;
+            Node node = root;
+            for (int level = 0; !node.leaf && level < DEPTH; level++) {
+                if (node.children == null) {
+                    node.children = new Node[8];
+                    reducible[level].add(node);
+                }
+                int shift = 7 - level;
+                int child = (r >> shift & 1) << 2 | (g >> shift & 1) << 1 | (b >> shift & 1);
+                if (node.children[child] == null) {
+                    var created = new Node();
+                    if (level == DEPTH - 1) {
+                        created.leaf = true;
+                        leaves++;
+                    }
+                    node.children[child] = created;
+                }
+                node = node.children[child];
+            }
+            node.sumR += sumR;
+            node.sumG += sumG;
+            node.sumB += sumB;
+            node.count += count;
+            while (leaves > maxColors) {
+                reduce();
+            }
+        }
+
+        /**
+         * Folds the children of the deepest reducible node with the fewest pixels into it.
+         */
+        private void reduce() {
+            int level = DEPTH - 1;
+            while (level > 0 && reducible[level].isEmpty()) {
+                level--;
+            }
+            var candidates = reducible[level];
+            int best = 0;
+            long bestCount = Long.MAX_VALUE;
+            for (int i = 0; i < candidates.size(); i++) {
+                long n = 0;
+                for (var child : candidates.get(i).children) {
+                    if (child != null) n += child.count;
+                }
+                if (n < bestCount) {
+                    bestCount = n;
+                    best = i;
+                }
+            }
+            var node = candidates.get(best);
+            candidates.set(best, candidates.get(candidates.size() - 1));
+            candidates.remove(candidates.size() - 1);
+            int merged = 0;
+            for (var child : node.children) {
+                if (child == null) continue;
+                node.sumR += child.sumR;
+                node.sumG += child.sumG;
+                node.sumB += child.sumB;
+                node.count += child.count;
+                merged++;
+            }
+            node.children = null;
+            node.leaf = true;
+            leaves -= merged - 1;
+        }
+
+        public int[] palette() {
+            var out = new ArrayList<Integer>();
+            collect(root, out);
+            return out.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static void collect(Node node, ArrayList<Integer> out) {
+            if (node.leaf) {
+                if (node.count > 0) {
+                    out.add(0xFF000000 | (int) (node.sumR / node.count) << 16 | (int) (node.sumG / node.count) << 8 | (int) (node.sumB / node.count));
+                }
+                return;
+            }
+            if (node.children != null) {
+                for (var child : node.children) {
+                    if (child != null) collect(child, out);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * sRGB -> OKLab conversion without per-pixel {@code pow}/{@code cbrt}:
+ * the transfer curve is a 256 entry table, the cube root is interpolated from a table and refined by one Newton step.
+ * The cone and axis methods split {@link #toLab} so lookups can keep the coordinates in locals.
+ */
+public final class OkLab {
+    private static final float[] LINEAR = new float[256];
+    private static final int CBRT_BITS = 12;
+    private static final int CBRT_SIZE = 1 << CBRT_BITS;
+    private static final float[] CBRT = new float[CBRT_SIZE + 1];
+    /**
+     * Below this the cube root is too steep for the table, the first few entries go to {@link Math#cbrt}.
+     */
+    private static final float CBRT_EXACT_BELOW = 16f / CBRT_SIZE;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        for (int i = 0; i <= CBRT_SIZE; i++) {
+            CBRT[i] = (float) Math.cbrt((double) i / CBRT_SIZE);
+        }
+    }
+
+    private OkLab() {
+    }
+
+    public static float linear(int channel) {
+        return LINEAR[channel & 0xFF];
+    }
+
+    /**
+     * Cube root for {@code x} in {@code [0, 1]}. Linear interpolation is within {@code 1 / (36 k^2)} of the root in
+     * table cell {@code k}, the Newton step squares that, so from cell 16 on the result is float exact.
+     */
+    public static float cbrt(float x) {
+        if (x < CBRT_EXACT_BELOW) {
+            return (float) Math.cbrt(x);
+        }
+        float t = x * CBRT_SIZE;
+        int i = Math.min((int) t, CBRT_SIZE - 1);
+        float y = CBRT[i] + (CBRT[i + 1] - CBRT[i]) * (t - i);
+        return y - (y * y * y - x) / (3 * y * y);
+    }
+
+    /**
+     * Cube root of the long wavelength cone response of the opaque color {@code rgb}.
+     */
+    public static float coneL(int rgb) {
+        return cbrt(0.4122214708f * LINEAR[rgb >> 16 & 0xFF] + 0.5363325363f * LINEAR[rgb >> 8 & 0xFF] + 0.0514459929f * LINEAR[rgb & 0xFF]);
+    }
+
+    public static float coneM(int rgb) {
+        return cbrt(0.2119034982f * LINEAR[rgb >> 16 & 0xFF] + 0.6806995451f * LINEAR[rgb >> 8 & 0xFF] + 0.1073969566f * LINEAR[rgb & 0xFF]);
+    }
+
+    public static float coneS(int rgb) {
+        return cbrt(0.0883024619f * LINEAR[rgb >> 16 & 0xFF] + 0.2817188376f * LINEAR[rgb >> 8 & 0xFF] + 0.6299787005f * LINEAR[rgb & 0xFF]);
+    }
+
+    /**
+     * {@code L} from the cone roots {@link #coneL}, {@link #coneM} and {@link #coneS}.
+     */
+    public static float lightness(float l, float m, float s) {
+        return 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+    }
+
+    /**
+     * {@code a}, green to red.
+     */
+    public static float greenRed(float l, float m, float s) {
+        return 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+    }
+
+    /**
+     * {@code b}, blue to yellow.
+     */
+    public static float blueYellow(float l, float m, float s) {
+        return 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+    }
+
+    /**
+     * Writes {@code L, a, b} of the opaque color {@code rgb} into {@code out[offset .. offset + 2]}.
+     */
+    public static void toLab(int rgb, float[] out, int offset) {
+        float l = coneL(rgb);
+        float m = coneM(rgb);
+        float s = coneS(rgb);
+        out[offset] = lightness(l, m, s);
+        out[offset + 1] = greenRed(l, m, s);
+        out[offset + 2] = blueYellow(l, m, s);
+    }
+
+    /**
+     * Reference conversion with {@link Math#pow} and {@link Math#cbrt}, used to check the tables.
+     */
+    public static void toLabExact(int rgb, double[] out) {
+        double[] c = new double[3];
+        for (int i = 0; i < 3; i++) {
+            double v = (rgb >> (16 - 8 * i) & 0xFF) / 255.0;
+            c[i] = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+        }
+        double l = Math.cbrt(0.4122214708 * c[0] + 0.5363325363 * c[1] + 0.0514459929 * c[2]);
+        double m = Math.cbrt(0.2119034982 * c[0] + 0.6806995451 * c[1] + 0.1073969566 * c[2]);
+        double s = Math.cbrt(0.0883024619 * c[0] + 0.2817188376 * c[1] + 0.6299787005 * c[2]);
+        out[0] = 0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s;
+        out[1] = 1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s;
+        out[2] = 0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s;
+    }
+}
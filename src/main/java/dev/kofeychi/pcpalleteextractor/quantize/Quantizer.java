@@ -0,0 +1,52 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+/**
+ * Builds a palette of at most {@code maxColors} opaque colors from an {@link RgbHistogram}.
+ */
+public interface Quantizer {
+
+    String name();
+
+    /**
+     * @throws IllegalArgumentException when {@code maxColors} is less than 1, see {@link #checkColorCount}
+     */
+    int[] quantize(RgbHistogram histogram, int maxColors);
+
+    /**
+     * Shared argument check of every quantizer, so they all reject the same counts the same way.
+     */
+    static void checkColorCount(int maxColors) {
+        if (maxColors < 1) {
+            throw new IllegalArgumentException("Color count must be at least 1");
+        }
+    }
+
+    /**
+     * Runs the quantizer and measures how long it took and how well the palette fits the histogram.
+     */
+    default QuantizerReport evaluate(RgbHistogram histogram, int maxColors) {
+        long start = System.nanoTime();
+        var palette = quantize(histogram, maxColors);
+        long nanos = System.nanoTime() - start;
+        return new QuantizerReport(name(), palette, nanos, QuantizerReport.meanSquaredError(histogram, palette));
+    }
+
+    static Quantizer medianCut() {
+        return new MedianCut();
+    }
+
+    static Quantizer wu() {
+        return new WuQuantizer();
+    }
+
+    static Quantizer octree() {
+        return new OctreeQuantizer();
+    }
+
+    /**
+     * Seeds Lloyd's k-means with {@code seed} and refines it for at most {@code iterations} rounds.
+     */
+    static Quantizer kMeans(Quantizer seed, int iterations) {
+        return new KMeansRefinement(seed, iterations);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * @param meanSquaredError average of {@code dr^2 + dg^2 + db^2} over all pixels when every bin is mapped to its nearest palette entry
+ */
+public record QuantizerReport(String name, int[] palette, long nanos, double meanSquaredError) {
+
+    public static double meanSquaredError(RgbHistogram h, int[] palette) {
+        if (h.isEmpty() || palette.length == 0) {
+            return 0;
+        }
+        var index = NearestColorIndex.create(NearestColorIndex.Mode.KD_TREE, palette);
+        double error = 0;
+        for (int bin = 0; bin < RgbHistogram.BINS; bin++) {
+            int n = h.counts[bin];
+            if (n == 0) continue;
+            int q = palette[index.nearestIndex(h.mean(bin))];
+            long qr = q >> 16 & 0xFF, qg = q >> 8 & 0xFF, qb = q & 0xFF;
+            // sum over pixels of |p - q|^2 = sum(p^2) - 2 q . sum(p) + n |q|^2
+            error += h.sumSq[bin]
+                    - 2.0 * (qr * h.sumR[bin] + qg * h.sumG[bin] + qb * h.sumB[bin])
+                    + (double) n * (qr * qr + qg * qg + qb * qb);
+        }
+        return error / h.total();
+    }
+
+    /**
+     * @return the fastest report whose error is at most {@code maxError}, or {@code null} if none qualifies
+     */
+    public static QuantizerReport fastestWithin(Collection<QuantizerReport> reports, double maxError) {
+        return reports.stream()
+                .filter(r -> r.meanSquaredError() <= maxError)
+                .min(Comparator.comparingLong(QuantizerReport::nanos))
+                .orElse(null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d colors in %.3f ms, mse %.2f", name, palette.length, nanos / 1e6, meanSquaredError);
+    }
+}
@@ -0,0 +1,164 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.Arrays;
+
+/**
+ * Color histogram over {@link #BITS} bits per channel.
+ * Besides the pixel count every bin keeps exact channel sums, so bin averages don't lose precision.
+ * Small images also keep their exact colors, see {@link #exactColors()}.
+ * Fully transparent pixels are ignored.
+ */
+public class RgbHistogram {
+    public static final int BITS = 5;
+    public static final int SIDE = 1 << BITS;
+    public static final int SHIFT = 8 - BITS;
+    public static final int BINS = SIDE * SIDE * SIDE;
+    /**
+     * Colors that share a bin with another color are tracked exactly up to this many.
+     */
+    public static final int EXACT_COLORS = 1024;
+
+    final int[] counts = new int[BINS];
+    final long[] sumR = new long[BINS];
+    final long[] sumG = new long[BINS];
+    final long[] sumB = new long[BINS];
+    /**
+     * Sum of {@code r^2 + g^2 + b^2}, lets quantizers compute exact squared errors.
+     */
+    final long[] sumSq = new long[BINS];
+    /**
+     * Opaque color of the first pixel of every occupied bin.
+     */
+    private final int[] first = new int[BINS];
+    /**
+     * Colors that differ from the first color of their bin, {@code null} once there are more than {@link #EXACT_COLORS}.
+     */
+    private IntOpenHashSet others = new IntOpenHashSet();
+    private int occupied;
+    private long total;
+
+    public static int index(int r, int g, int b) {
+        return (r << (2 * BITS)) | (g << BITS) | b;
+    }
+
+    public static int indexOf(int rgb) {
+        return index((rgb >> 16 & 0xFF) >> SHIFT, (rgb >> 8 & 0xFF) >> SHIFT, (rgb & 0xFF) >> SHIFT);
+    }
+
+    public void add(int argb) {
+        add(argb, 1);
+    }
+
+    public void add(int argb, int count) {
+        if ((argb >>> 24) == 0 || count == 0) {
+            return;
+        }
+        int r = argb >> 16 & 0xFF;
+        int g = argb >> 8 & 0xFF;
+        int b = argb & 0xFF;
+        int i = index(r >> SHIFT, g >> SHIFT, b >> SHIFT);
+        int rgb = 0xFF000000 | argb;
+        if (counts[i] == 0) {
+            first[i] = rgb;
+            occupied++;
+        } else if (first[i] != rgb && others != null) {
+            addOther(rgb);
+        }
+        counts[i] += count;
+        sumR[i] += (long) r * count;
+        sumG[i] += (long) g * count;
+        sumB[i] += (long) b * count;
+        sumSq[i] += (long) (r * r + g * g + b * b) * count;
+        total += count;
+    }
+
+    public void addAll(int[] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            add(pixels[i]);
+        }
+    }
+
+    public void merge(RgbHistogram other) {
+        for (int i = 0; i < BINS; i++) {
+            if (other.counts[i] != 0) {
+                if (counts[i] == 0) {
+                    first[i] = other.first[i];
+                    occupied++;
+                } else if (first[i] != other.first[i] && others != null) {
+                    addOther(other.first[i]);
+                }
+            }
+            counts[i] += other.counts[i];
+            sumR[i] += other.sumR[i];
+            sumG[i] += other.sumG[i];
+            sumB[i] += other.sumB[i];
+            sumSq[i] += other.sumSq[i];
+        }
+        total += other.total;
+        if (other.others == null) {
+            others = null;
+        }
+        if (others != null) {
+            for (var it = other.others.iterator(); it.hasNext() && others != null; ) {
+                int rgb = it.nextInt();
+                if (first[indexOf(rgb)] != rgb) {
+                    addOther(rgb);
+                }
+            }
+        }
+    }
+
+    private void addOther(int rgb) {
+        others.add(rgb);
+        if (others.size() > EXACT_COLORS) {
+            others = null;
+        }
+    }
+
+    /**
+     * Every distinct opaque color added so far in ascending order, {@code null} when too many colors share bins
+     * to keep track of them.
+     */
+    public int[] exactColors() {
+        if (others == null) {
+            return null;
+        }
+        var colors = new int[occupied + others.size()];
+        int k = 0;
+        for (int i = 0; i < BINS; i++) {
+            if (counts[i] != 0) {
+                colors[k++] = first[i];
+            }
+        }
+        for (var it = others.iterator(); it.hasNext(); ) {
+            colors[k++] = it.nextInt();
+        }
+        Arrays.sort(colors);
+        return colors;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    public int count(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Average opaque color of the pixels in {@code bin}, or 0 when the bin is empty.
+     */
+    public int mean(int bin) {
+        int n = counts[bin];
+        if (n == 0) {
+            return 0;
+        }
+        return 0xFF000000 | (int) (sumR[bin] / n) << 16 | (int) (sumG[bin] / n) << 8 | (int) (sumB[bin] / n);
+    }
+}
@@ -0,0 +1,268 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import java.util.Arrays;
+
+/**
+ * Xiaolin Wu's variance-minimizing quantizer (Graphics Gems II).
+ * Works on cumulative moments of the {@link RgbHistogram} bins, every cut is chosen in O(1) per candidate plane.
+ */
+public class WuQuantizer implements Quantizer {
+    private static final int SIDE = RgbHistogram.SIDE + 1;
+    private static final int RED = 0, GREEN = 1, BLUE = 2;
+
+    @Override
+    public String name() {
+        return "wu";
+    }
+
+    private static int at(int r, int g, int b) {
+        return (r * SIDE + g) * SIDE + b;
+    }
+
+    /**
+     * Exclusive lower, inclusive upper bounds in moment space.
+     */
+    private static class Cube {
+        int r0, r1, g0, g1, b0, b1;
+        int volume() {
+            return (r1 - r0) * (g1 - g0) * (b1 - b0);
+        }
+    }
+
+    private final long[] wt = new long[SIDE * SIDE * SIDE];
+    private final long[] mr = new long[SIDE * SIDE * SIDE];
+    private final long[] mg = new long[SIDE * SIDE * SIDE];
+    private final long[] mb = new long[SIDE * SIDE * SIDE];
+    private final double[] m2 = new double[SIDE * SIDE * SIDE];
+
+    @Override
+    public synchronized int[] quantize(RgbHistogram histogram, int maxColors) {
+        Quantizer.checkColorCount(maxColors);
+        if (histogram.isEmpty()) {
+            return new int[0];
+        }
+        moments(histogram);
+
+        var cubes = new Cube[maxColors];
+        var variance = new double[maxColors];
+        cubes[0] = new Cube();
+        cubes[0].r1 = cubes[0].g1 = cubes[0].b1 = SIDE - 1;
+        int count = maxColors;
+        int next = 0;
+        for (int i = 1; i < maxColors; i++) {
+            cubes[i] = new Cube();
+            if (cut(cubes[next], cubes[i])) {
+                variance[next] = cubes[next].volume() > 1 ? variance(cubes[next]) : 0;
+                variance[i] = cubes[i].volume() > 1 ? variance(cubes[i]) : 0;
+            } else {
+                variance[next] = 0;
+                i--;
+            }
+            next = 0;
+            double best = variance[0];
+            for (int k = 1; k <= i; k++) {
+                if (variance[k] > best) {
+                    best = variance[k];
+                    next = k;
+                }
+            }
+            if (best <= 0) {
+                count = i + 1;
+                break;
+            }
+        }
+
+        var palette = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            long weight = volume(cubes[i], wt);
+            if (weight > 0) {
+                int r = (int) (volume(cubes[i], mr) / weight);
+                int g = (int) (volume(cubes[i], mg) / weight);
+                int b = (int) (volume(cubes[i], mb) / weight);
+                palette[n++] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return n == count ? palette : Arrays.copyOf(palette, n);
+    }
+
+    private void moments(RgbHistogram h) {
+        Arrays.fill(wt, 0);
+        Arrays.fill(mr, 0);
+        Arrays.fill(mg, 0);
+        Arrays.fill(mb, 0);
+        Arrays.fill(m2, 0);
+        for (int r = 0; r < RgbHistogram.SIDE; r++) {
+            for (int g = 0; g < RgbHistogram.SIDE; g++) {
+                for (int b = 0; b < RgbHistogram.SIDE; b++) {
+                    int bin = RgbHistogram.index(r, g, b);
+                    int i = at(r + 1, g + 1, b + 1);
+                    wt[i] = h.counts[bin];
+                    mr[i] = h.sumR[bin];
+                    mg[i] = h.sumG[bin];
+                    mb[i] = h.sumB[bin];
+                    m2[i] = h.sumSq[bin];
+                }
+            }
+        }
+        // turn per-bin values into cumulative moments
+        var areaW = new long[SIDE];
+        var areaR = new long[SIDE];
+        var areaG = new long[SIDE];
+        var areaB = new long[SIDE];
+        var area2 = new double[SIDE];
+        for (int r = 1; r < SIDE; r++) {
+            Arrays.fill(areaW, 0);
+            Arrays.fill(areaR, 0);
+            Arrays.fill(areaG, 0);
+            Arrays.fill(areaB, 0);
+            Arrays.fill(area2, 0);
+            for (int g = 1; g < SIDE; g++) {
+                long lineW = 0, lineR = 0, lineG = 0, lineB = 0;
+                double line2 = 0;
+                for (int b = 1; b < SIDE; b++) {
+                    int i = at(r, g, b);
+                    lineW += wt[i];
+                    lineR += mr[i];
+                    lineG += mg[i];
+                    lineB += mb[i];
+                    line2 += m2[i];
+                    areaW[b] += lineW;
+                    areaR[b] += lineR;
+                    areaG[b] += lineG;
+                    areaB[b] += lineB;
+                    area2[b] += line2;
+                    int prev = at(r - 1, g, b);
+                    wt[i] = wt[prev] + areaW[b];
+                    mr[i] = mr[prev] + areaR[b];
+                    mg[i] = mg[prev] + areaG[b];
+                    mb[i] = mb[prev] + areaB[b];
+                    m2[i] = m2[prev] + area2[b];
+                }
+            }
+        }
+    }
+
+    private static long volume(Cube c, long[] m) {
+        return m[at(c.r1, c.g1, c.b1)] - m[at(c.r1, c.g1, c.b0)]
+                - m[at(c.r1, c.g0, c.b1)] + m[at(c.r1, c.g0, c.b0)]
+                - m[at(c.r0, c.g1, c.b1)] + m[at(c.r0, c.g1, c.b0)]
+                + m[at(c.r0, c.g0, c.b1)] - m[at(c.r0, c.g0, c.b0)];
+    }
+
+    private static double volume(Cube c, double[] m) {
+        return m[at(c.r1, c.g1, c.b1)] - m[at(c.r1, c.g1, c.b0)]
+                - m[at(c.r1, c.g0, c.b1)] + m[at(c.r1, c.g0, c.b0)]
+                - m[at(c.r0, c.g1, c.b1)] + m[at(c.r0, c.g1, c.b0)]
+                + m[at(c.r0, c.g0, c.b1)] - m[at(c.r0, c.g0, c.b0)];
+    }
+
+    /**
+     * Part of the cube's moment below the lower bound along {@code dir}, with the sign used by {@link #top}.
+     */
+    private static long bottom(Cube c, int dir, long[] m) {
+        return switch (dir) {
+            case RED -> -m[at(c.r0, c.g1, c.b1)] + m[at(c.r0, c.g1, c.b0)] + m[at(c.r0, c.g0, c.b1)] - m[at(c.r0, c.g0, c.b0)];
+            case GREEN -> -m[at(c.r1, c.g0, c.b1)] + m[at(c.r1, c.g0, c.b0)] + m[at(c.r0, c.g0, c.b1)] - m[at(c.r0, c.g0, c.b0)];
+            default -> -m[at(c.r1, c.g1, c.b0)] + m[at(c.r1, c.g0, c.b0)] + m[at(c.r0, c.g1, c.b0)] - m[at(c.r0, c.g0, c.b0)];
+        };
+    }
+
+    private static long top(Cube c, int dir, int pos, long[] m) {
+        return switch (dir) {
+            case RED -> m[at(pos, c.g1, c.b1)] - m[at(pos, c.g1, c.b0)] - m[at(pos, c.g0, c.b1)] + m[at(pos, c.g0, c.b0)];
+            case GREEN -> m[at(c.r1, pos, c.b1)] - m[at(c.r1, pos, c.b0)] - m[at(c.r0, pos, c.b1)] + m[at(c.r0, pos, c.b0)];
+            default -> m[at(c.r1, c.g1, pos)] - m[at(c.r1, c.g0, pos)] - m[at(c.r0, c.g1, pos)] + m[at(c.r0, c.g0, pos)];
+        };
+    }
+
+    private double variance(Cube c) {
+        double dr = volume(c, mr);
+        double dg = volume(c, mg);
+        double db = volume(c, mb);
+        double xx = volume(c, m2);
+        return xx - (dr * dr + dg * dg + db * db) / volume(c, wt);
+    }
+
+    /**
+     * @param cut receives the best cutting plane along {@code dir}, or -1 when the cube can't be cut
+     */
+    private double maximize(Cube c, int dir, int first, int last, int[] cut, long wholeR, long wholeG, long wholeB, long wholeW) {
+        long baseR = bottom(c, dir, mr);
+        long baseG = bottom(c, dir, mg);
+        long baseB = bottom(c, dir, mb);
+        long baseW = bottom(c, dir, wt);
+        double max = 0;
+        cut[0] = -1;
+        for (int i = first; i < last; i++) {
+            double halfR = baseR + top(c, dir, i, mr);
+            double halfG = baseG + top(c, dir, i, mg);
+            double halfB = baseB + top(c, dir, i, mb);
+            double halfW = baseW + top(c, dir, i, wt);
+            if (halfW == 0) {
+                continue;
+            }
+            double temp = (halfR * halfR + halfG * halfG + halfB * halfB) / halfW;
+            halfR = wholeR - halfR;
+            halfG = wholeG - halfG;
+            halfB = wholeB - halfB;
+            halfW = wholeW - halfW;
+            if (halfW == 0) {
+                continue;
+            }
+            temp += (halfR * halfR + halfG * halfG + halfB * halfB) / halfW;
+            if (temp > max) {
+                max = temp;
+                cut[0] = i;
+            }
+        }
+        return max;
+    }
+
+    private boolean cut(Cube set1, Cube set2) {
+        long wholeR = volume(set1, mr);
+        long wholeG = volume(set1, mg);
+        long wholeB = volume(set1, mb);
+        long wholeW = volume(set1, wt);
+        var cutR = new int[1];
+        var cutG = new int[1];
+        var cutB = new int[1];
+        double maxR = maximize(set1, RED, set1.r0 + 1, set1.r1, cutR, wholeR, wholeG, wholeB, wholeW);
+        double maxG = maximize(set1, GREEN, set1.g0 + 1, set1.g1, cutG, wholeR, wholeG, wholeB, wholeW);
+        double maxB = maximize(set1, BLUE, set1.b0 + 1, set1.b1, cutB, wholeR, wholeG, wholeB, wholeW);
+
+        int dir;
+        if (maxR >= maxG && maxR >= maxB) {
+            dir = RED;
+            if (cutR[0] < 0) {
+                return false;
+            }
+        } else if (maxG >= maxR && maxG >= maxB) {
+            dir = GREEN;
+        } else {
+            dir = BLUE;
+        }
+
+        set2.r1 = set1.r1;
+        set2.g1 = set1.g1;
+        set2.b1 = set1.b1;
+        switch (dir) {
+            case RED -> {
+                set2.r0 = set1.r1 = cutR[0];
+                set2.g0 = set1.g0;
+                set2.b0 = set1.b0;
+            }
+            case GREEN -> {
+                set2.g0 = set1.g1 = cutG[0];
+                set2.r0 = set1.r0;
+                set2.b0 = set1.b0;
+            }
+            default -> {
+                set2.b0 = set1.b1 = cutB[0];
+                set2.r0 = set1.r0;
+                set2.g0 = set1.g0;
+            }
+        }
+        return true;
+    }
+}
@@ -48,49 +48,7 @@ public final class ARGBColor implements Comparable<ARGBColor> {
     }
 
     public static int HSBtoRGB(float hue, float saturation, float brightness) {
-        int r = 0, g = 0, b = 0;
-        if (saturation == 0) {
-            r = g = b = (int) (brightness * 255.0f + 0.5f);
-        } else {
-            float h = (hue - (float) Math.floor(hue)) * 6.0f;
-            float f = h - (float) Math.floor(h);
-            float p = brightness * (1.0f - saturation);
-            float q = brightness * (1.0f - saturation * f);
-            float t = brightness * (1.0f - (saturation * (1.0f - f)));
-            switch ((int) h) {
-                case 0:
-                    r = (int) (brightness * 255.0f + 0.5f);
-                    g = (int) (t * 255.0f + 0.5f);
-                    b = (int) (p * 255.0f + 0.5f);
-                    break;
-                case 1:
-                    r = (int) (q * 255.0f + 0.5f);
-                    g = (int) (brightness * 255.0f + 0.5f);
-                    b = (int) (p * 255.0f + 0.5f);
-                    break;
-                case 2:
-                    r = (int) (p * 255.0f + 0.5f);
-                    g = (int) (brightness * 255.0f + 0.5f);
-                    b = (int) (t * 255.0f + 0.5f);
-                    break;
-                case 3:
-                    r = (int) (p * 255.0f + 0.5f);
-                    g = (int) (q * 255.0f + 0.5f);
-                    b = (int) (brightness * 255.0f + 0.5f);
-                    break;
-                case 4:
-                    r = (int) (t * 255.0f + 0.5f);
-                    g = (int) (p * 255.0f + 0.5f);
-                    b = (int) (brightness * 255.0f + 0.5f);
-                    break;
-                case 5:
-                    r = (int) (brightness * 255.0f + 0.5f);
-                    g = (int) (p * 255.0f + 0.5f);
-                    b = (int) (q * 255.0f + 0.5f);
-                    break;
-            }
-        }
-        return 0xff000000 | (r << 16) | (g << 8) | b;
+        return ColorOps.hsbToRgb(hue, saturation, brightness);
     }
 
     public int getColor() {
@@ -120,18 +78,7 @@ public final class ARGBColor implements Comparable<ARGBColor> {
      * @return the brighter color
      */
     public ARGBColor brighter(double factor) {
-        int r = getRed(), g = getGreen(), b = getBlue();
-        int i = (int) (1.0 / (1.0 - (1 / factor)));
-        if (r == 0 && g == 0 && b == 0) {
-            return ofRGBA(i, i, i, getAlpha());
-        }
-        if (r > 0 && r < i) r = i;
-        if (g > 0 && g < i) g = i;
-        if (b > 0 && b < i) b = i;
-        return ofRGBA(Math.min((int) (r / (1 / factor)), 255),
-                Math.min((int) (g / (1 / factor)), 255),
-                Math.min((int) (b / (1 / factor)), 255),
-                getAlpha());
+        return new ARGBColor(ColorOps.brighter(color, factor));
     }
 
     /**
@@ -141,10 +88,7 @@ public final class ARGBColor implements Comparable<ARGBColor> {
      * @return the darker color
      */
     public ARGBColor darker(double factor) {
-        return ofRGBA(Math.max((int) (getRed() * (1 / factor)), 0),
-                Math.max((int) (getGreen() * (1 / factor)), 0),
-                Math.max((int) (getBlue() * (1 / factor)), 0),
-                getAlpha());
+        return new ARGBColor(ColorOps.darker(color, factor));
     }
 
     @Override
@@ -165,140 +109,37 @@ public final class ARGBColor implements Comparable<ARGBColor> {
     }
 
     public static int averageHSVColor(int[] colorsRGB) {
-        int n = colorsRGB.length;
-        if (n == 0) return 0; // или кинь исключение
-
-        float sumS = 0f;
-        float sumV = 0f;
-        float sumX = 0f;
-        float sumY = 0f;
-
-        for (int rgb : colorsRGB) {
-            int r = (rgb >> 16) & 0xFF;
-            int g = (rgb >> 8) & 0xFF;
-            int b = rgb & 0xFF;
-
-            float[] hsv = java.awt.Color.RGBtoHSB(r, g, b, null);
-
-            float hRad = (float)(2 * Math.PI * hsv[0]);
-            sumX += Math.cos(hRad);
-            sumY += Math.sin(hRad);
-
-            sumS += hsv[1];
-            sumV += hsv[2];
-        }
-
-        float avgH = (float)(Math.atan2(sumY, sumX) / (2 * Math.PI));
-        if (avgH < 0) avgH += 1.0f;
-
-        float avgS = sumS / n;
-        float avgV = sumV / n;
-
-        return ARGBColor.HSBtoRGB(avgH, avgS, avgV) & 0xFFFFFF; // вернём как 0xRRGGBB
+        return ColorOps.averageHsv(colorsRGB, 0, colorsRGB.length) & 0xFFFFFF; // вернём как 0xRRGGBB
     }
     public static int averageHSVColor(Integer[] colorsRGB) {
-        int n = colorsRGB.length;
-        if (n == 0) return 0;
-
-        float sumS = 0f;
-        float sumV = 0f;
-        float sumX = 0f;
-        float sumY = 0f;
-
+        var colors = new int[colorsRGB.length];
+        int n = 0;
         for (Integer rgbValue : colorsRGB) {
-            if (rgbValue == null) continue;
-
-            int rgb = rgbValue & 0xFFFFFF; // отсекаем альфу, если была
-
-            int r = (rgb >> 16) & 0xFF;
-            int g = (rgb >> 8) & 0xFF;
-            int b = rgb & 0xFF;
-
-            float[] hsv = java.awt.Color.RGBtoHSB(r, g, b, null);
-
-            float hRad = (float)(2 * Math.PI * hsv[0]);
-            sumX += Math.cos(hRad);
-            sumY += Math.sin(hRad);
-
-            sumS += hsv[1];
-            sumV += hsv[2];
+            if (rgbValue != null) colors[n++] = rgbValue;
         }
-
-        float avgH = (float)(Math.atan2(sumY, sumX) / (2 * Math.PI));
-        if (avgH < 0) avgH += 1.0f;
-
-        float avgS = sumS / n;
-        float avgV = sumV / n;
-
-        return ARGBColor.HSBtoRGB(avgH, avgS, avgV) & 0xFFFFFF;
+        return ColorOps.averageHsv(colors, 0, n) & 0xFFFFFF;
     }
     public static ARGBColor averageHSV(ARGBColor[] colors) {
-        int n = colors.length;
-        float sumS = 0f;
-        float sumV = 0f;
-
-        // Для усреднения H: переводим в вектор на окружности
-        float sumX = 0f;
-        float sumY = 0f;
-
-        for (ARGBColor color : colors) {
-            float[] hsv = java.awt.Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
-
-            float hRad = (float)(2 * Math.PI * hsv[0]); // hue в радианах
-            sumX += (float) Math.cos(hRad);
-            sumY += (float) Math.sin(hRad);
-
-            sumS += hsv[1];
-            sumV += hsv[2];
+        var packed = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            packed[i] = colors[i].color;
         }
-
-        float avgH = (float)(Math.atan2(sumY, sumX) / (2 * Math.PI));
-        if (avgH < 0) avgH += 1.0f; // нормализуем от 0 до 1
-
-        float avgS = sumS / n;
-        float avgV = sumV / n;
-
-        return new ARGBColor(ARGBColor.HSBtoRGB(avgH, avgS, avgV));
+        return new ARGBColor(ColorOps.averageHsv(packed, 0, packed.length));
     }
     public ARGBColor factor(float factor) {
-        return ARGBColor.ofRGBA(
-                this.getRed()*factor,
-                this.getGreen()*factor,
-                this.getBlue()*factor,
-                this.getAlpha()*factor
-        );
+        return new ARGBColor(ColorOps.scale(color, factor, factor, factor, factor));
     }
     public ARGBColor factorR(float factor) {
-        return ARGBColor.ofRGBA(
-                this.getRed()*factor,
-                this.getGreen(),
-                this.getBlue(),
-                this.getAlpha()
-        );
+        return new ARGBColor(ColorOps.scale(color, factor, 1, 1, 1));
     }
     public ARGBColor factorG(float factor) {
-        return ARGBColor.ofRGBA(
-                this.getRed(),
-                this.getGreen()*factor,
-                this.getBlue(),
-                this.getAlpha()
-        );
+        return new ARGBColor(ColorOps.scale(color, 1, factor, 1, 1));
     }
     public ARGBColor factorB(float factor) {
-        return ARGBColor.ofRGBA(
-                this.getRed(),
-                this.getGreen(),
-                this.getBlue()*factor,
-                this.getAlpha()
-        );
+        return new ARGBColor(ColorOps.scale(color, 1, 1, factor, 1));
     }
     public ARGBColor factorA(float factor) {
-        return ARGBColor.ofRGBA(
-                this.getRed(),
-                this.getGreen(),
-                this.getBlue(),
-                this.getAlpha()*factor
-        );
+        return new ARGBColor(ColorOps.scale(color, 1, 1, 1, factor));
     }
 
     @Override
@@ -0,0 +1,194 @@
+package dev.kofeychi.pcpalleteextractor.util;
+
+/**
+ * Color math over packed ARGB {@code int[]} spans.
+ * Every method writes into arrays supplied by the caller and allocates nothing,
+ * hue is in turns ({@code [0, 1)}) like {@link java.awt.Color#RGBtoHSB}.
+ */
+public final class ColorOps {
+    public static final int TRIG_BITS = 12;
+    public static final int TRIG_SIZE = 1 << TRIG_BITS;
+    private static final float[] COS = new float[TRIG_SIZE];
+    private static final float[] SIN = new float[TRIG_SIZE];
+
+    static {
+        for (int i = 0; i < TRIG_SIZE; i++) {
+            double angle = 2 * Math.PI * i / TRIG_SIZE;
+            COS[i] = (float) Math.cos(angle);
+            SIN[i] = (float) Math.sin(angle);
+        }
+    }
+
+    private ColorOps() {
+    }
+
+    private static int turn(float hue) {
+        return (int) (hue * TRIG_SIZE + 0.5f) & (TRIG_SIZE - 1);
+    }
+
+    public static float cosTurn(float hue) {
+        return COS[turn(hue)];
+    }
+
+    public static float sinTurn(float hue) {
+        return SIN[turn(hue)];
+    }
+
+    public static float hue(int rgb) {
+        int r = rgb >> 16 & 0xFF, g = rgb >> 8 & 0xFF, b = rgb & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        if (max == min) {
+            return 0;
+        }
+        float range = max - min;
+        float hue;
+        if (r == max) {
+            hue = (max - b) / range - (max - g) / range;
+        } else if (g == max) {
+            hue = 2 + (max - r) / range - (max - b) / range;
+        } else {
+            hue = 4 + (max - g) / range - (max - r) / range;
+        }
+        hue /= 6;
+        return hue < 0 ? hue + 1 : hue;
+    }
+
+    public static float saturation(int rgb) {
+        int max = Math.max(rgb >> 16 & 0xFF, Math.max(rgb >> 8 & 0xFF, rgb & 0xFF));
+        int min = Math.min(rgb >> 16 & 0xFF, Math.min(rgb >> 8 & 0xFF, rgb & 0xFF));
+        return max == 0 ? 0 : (max - min) / (float) max;
+    }
+
+    public static float value(int rgb) {
+        return Math.max(rgb >> 16 & 0xFF, Math.max(rgb >> 8 & 0xFF, rgb & 0xFF)) / 255f;
+    }
+
+    /**
+     * Splits {@code length} colors starting at {@code src[srcOffset]} into hue, saturation and value arrays.
+     */
+    public static void toHsv(int[] src, int srcOffset, float[] hue, float[] saturation, float[] value, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int rgb = src[srcOffset + i];
+            hue[dstOffset + i] = hue(rgb);
+            saturation[dstOffset + i] = saturation(rgb);
+            value[dstOffset + i] = value(rgb);
+        }
+    }
+
+    /**
+     * Packs hue, saturation and value arrays back into opaque colors.
+     */
+    public static void fromHsv(float[] hue, float[] saturation, float[] value, int srcOffset, int[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = hsbToRgb(hue[srcOffset + i], saturation[srcOffset + i], value[srcOffset + i]);
+        }
+    }
+
+    public static int hsbToRgb(float hue, float saturation, float brightness) {
+        int r = 0, g = 0, b = 0;
+        if (saturation == 0) {
+            r = g = b = (int) (brightness * 255.0f + 0.5f);
+        } else {
+            float h = (hue - (float) Math.floor(hue)) * 6.0f;
+            float f = h - (float) Math.floor(h);
+            int v = (int) (brightness * 255.0f + 0.5f);
+            int p = (int) (brightness * (1.0f - saturation) * 255.0f + 0.5f);
+            int q = (int) (brightness * (1.0f - saturation * f) * 255.0f + 0.5f);
+            int t = (int) (brightness * (1.0f - (saturation * (1.0f - f))) * 255.0f + 0.5f);
+            switch ((int) h) {
+                case 0 -> { r = v; g = t; b = p; }
+                case 1 -> { r = q; g = v; b = p; }
+                case 2 -> { r = p; g = v; b = t; }
+                case 3 -> { r = p; g = q; b = v; }
+                case 4 -> { r = t; g = p; b = v; }
+                case 5 -> { r = v; g = p; b = q; }
+            }
+        }
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Averages colors in HSV, hue is averaged on the circle so red next to purple stays red.
+     *
+     * @return opaque average color, {@code 0} for an empty span
+     */
+    public static int averageHsv(int[] colors, int offset, int length) {
+        if (length == 0) return 0;
+        float sumS = 0f;
+        float sumV = 0f;
+        float sumX = 0f;
+        float sumY = 0f;
+        for (int i = offset; i < offset + length; i++) {
+            int rgb = colors[i];
+            int t = turn(hue(rgb));
+            sumX += COS[t];
+            sumY += SIN[t];
+            sumS += saturation(rgb);
+            sumV += value(rgb);
+        }
+        float avgH = (float) (Math.atan2(sumY, sumX) / (2 * Math.PI));
+        if (avgH < 0) avgH += 1.0f;
+        return hsbToRgb(avgH, sumS / length, sumV / length);
+    }
+
+    private static int channel(float v) {
+        int i = (int) (v + 0.5f);
+        return i < 0 ? 0 : Math.min(i, 255);
+    }
+
+    public static int scale(int argb, float r, float g, float b, float a) {
+        return channel((argb >>> 24) * a) << 24
+                | channel((argb >> 16 & 0xFF) * r) << 16
+                | channel((argb >> 8 & 0xFF) * g) << 8
+                | channel((argb & 0xFF) * b);
+    }
+
+    /**
+     * Multiplies each channel by its factor, results are rounded and clamped to {@code [0, 255]}.
+     */
+    public static void scale(int[] src, int srcOffset, int[] dst, int dstOffset, int length, float r, float g, float b, float a) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = scale(src[srcOffset + i], r, g, b, a);
+        }
+    }
+
+    /**
+     * Same rule as {@link java.awt.Color#brighter()} with a custom factor, alpha is kept.
+     */
+    public static int brighter(int argb, double factor) {
+        int r = argb >> 16 & 0xFF, g = argb >> 8 & 0xFF, b = argb & 0xFF;
+        int alpha = argb & 0xFF000000;
+        int i = (int) (1.0 / (1.0 - (1 / factor)));
+        if (r == 0 && g == 0 && b == 0) {
+            return alpha | (i & 0xFF) << 16 | (i & 0xFF) << 8 | i & 0xFF;
+        }
+        if (r > 0 && r < i) r = i;
+        if (g > 0 && g < i) g = i;
+        if (b > 0 && b < i) b = i;
+        return alpha | (Math.min((int) (r / (1 / factor)), 255) & 0xFF) << 16
+                | (Math.min((int) (g / (1 / factor)), 255) & 0xFF) << 8
+                | Math.min((int) (b / (1 / factor)), 255) & 0xFF;
+    }
+
+    public static void brighter(int[] src, int srcOffset, int[] dst, int dstOffset, int length, double factor) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = brighter(src[srcOffset + i], factor);
+        }
+    }
+
+    /**
+     * Same rule as {@link ARGBColor#darker}, channels are clamped at zero and masked like {@link ARGBColor#ofRGBA}.
+     */
+    public static int darker(int argb, double factor) {
+        return argb & 0xFF000000 | (Math.max((int) ((argb >> 16 & 0xFF) * (1 / factor)), 0) & 0xFF) << 16
+                | (Math.max((int) ((argb >> 8 & 0xFF) * (1 / factor)), 0) & 0xFF) << 8
+                | Math.max((int) ((argb & 0xFF) * (1 / factor)), 0) & 0xFF;
+    }
+
+    public static void darker(int[] src, int srcOffset, int[] dst, int dstOffset, int length, double factor) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = darker(src[srcOffset + i], factor);
+        }
+    }
+}
@@ -8,6 +8,7 @@ public interface TexturePaths {
     Path BLOCK = ROOT.resolve("block");
     Path TEXTURE_ROOT = BLOCK.resolve("texture");
     Path MODEL_ROOT = BLOCK.resolve("model");
+    Path CACHE_ROOT = BLOCK.resolve("cache");
     Resolver TEXTURE = resolvable(TEXTURE_ROOT);
     Resolver MODEL = resolvable(MODEL_ROOT);
 
@@ -0,0 +1,122 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for MagicaVoxel {@code .vox} files, mapped with {@link FileChannel#map}.
+ * Every SIZE/XYZI pair inside MAIN is read, scene graph transforms are ignored so several models land at the origin.
+ * MagicaVoxel is z-up, its z becomes our y and its y our z.
+ */
+public class MagicaVoxelReader {
+    public static final int MAGIC = chunkId("VOX ");
+    private static final int MAIN = chunkId("MAIN");
+    private static final int SIZE = chunkId("SIZE");
+    private static final int XYZI = chunkId("XYZI");
+    private static final int RGBA = chunkId("RGBA");
+
+    /**
+     * Palette used when the file has no RGBA chunk, indexed by the voxel color index, entry {@code 0} is unused.
+     * Colors are opaque ARGB like every palette built from the file.
+     */
+    public static final int[] DEFAULT_PALETTE = defaultPalette();
+
+    private static int chunkId(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+
+    private static int[] defaultPalette() {
+        var palette = new int[256];
+        int i = 1;
+        // 6x6x6 cube without black, blue changes fastest
+        for (int r = 5; r >= 0; r--) {
+            for (int g = 5; g >= 0; g--) {
+                for (int b = 5; b >= 0; b--) {
+                    if (r == 0 && g == 0 && b == 0) continue;
+                    palette[i++] = 0xFF000000 | r * 0x33 << 16 | g * 0x33 << 8 | b * 0x33;
+                }
+            }
+        }
+        // blue, green, red and grey ramps
+        int[] ramp = {0xEE, 0xDD, 0xBB, 0xAA, 0x88, 0x77, 0x55, 0x44, 0x22, 0x11};
+        for (int shift : new int[]{0, 8, 16}) {
+            for (int v : ramp) {
+                palette[i++] = 0xFF000000 | v << shift;
+            }
+        }
+        for (int v : ramp) {
+            palette[i++] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        return palette;
+    }
+
+    public static void read(Path path, VoxelJsonReader.VoxelConsumer consumer) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), consumer);
+        }
+    }
+
+    public static void read(ByteBuffer buffer, VoxelJsonReader.VoxelConsumer consumer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a .vox file");
+        }
+        buffer.getInt(); // version
+        if (buffer.remaining() < 12 || buffer.getInt() != MAIN) {
+            throw new IOException("Missing MAIN chunk");
+        }
+        int mainContent = buffer.getInt();
+        int mainChildren = buffer.getInt();
+        buffer.position(buffer.position() + mainContent);
+        int end = Math.min(buffer.limit(), buffer.position() + mainChildren);
+
+        // the palette chunk comes after the models, voxels are read once it is known
+        int[] palette = DEFAULT_PALETTE;
+        int width = 0, height = 0, depth = 0;
+        var voxelChunks = new IntArrayList();
+        while (buffer.position() + 12 <= end) {
+            int id = buffer.getInt();
+            int content = buffer.getInt();
+            int children = buffer.getInt();
+            int start = buffer.position();
+            if (content < 0 || children < 0 || start + (long) content + children > end) {
+                throw new IOException("Truncated chunk");
+            }
+            if (id == SIZE) {
+                // x, y, z in MagicaVoxel axes
+                width = Math.max(width, buffer.getInt(start));
+                depth = Math.max(depth, buffer.getInt(start + 4));
+                height = Math.max(height, buffer.getInt(start + 8));
+            } else if (id == XYZI) {
+                if (content < 4 || buffer.getInt(start) < 0 || buffer.getInt(start) > (content - 4) / 4) {
+                    throw new IOException("Bad XYZI chunk");
+                }
+                voxelChunks.add(start);
+            } else if (id == RGBA && content >= 256 * 4) {
+                palette = new int[256];
+                for (int i = 0; i < 255; i++) {
+                    int rgba = buffer.getInt(start + i * 4);
+                    // stored as r, g, b, a bytes, entry i belongs to color index i + 1
+                    palette[i + 1] = 0xFF000000 | (rgba & 0xFF) << 16 | (rgba >> 8 & 0xFF) << 8 | rgba >> 16 & 0xFF;
+                }
+            }
+            buffer.position(start + content + children);
+        }
+        consumer.dimensions(width, height, depth);
+        for (int c = 0; c < voxelChunks.size(); c++) {
+            int start = voxelChunks.getInt(c);
+            int count = buffer.getInt(start);
+            for (int i = 0, at = start + 4; i < count; i++, at += 4) {
+                int packed = buffer.getInt(at);
+                int color = palette[packed >>> 24];
+                consumer.voxel(packed & 0xFF, packed >> 16 & 0xFF, packed >> 8 & 0xFF, color);
+            }
+        }
+    }
+}
@@ -3,10 +3,10 @@ package dev.kofeychi.pcpalleteextractor.voxel;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.quantize.Quantizer;
 import dev.kofeychi.pcpalleteextractor.util.TexturePaths;
 
 import java.awt.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 
@@ -18,18 +18,64 @@ public class Main {
             .setPrettyPrinting()
             .setLenient()
             .create();
+    public static final String USAGE = "Usage: voxel.Main [colors]\n"
+            + "  colors  number of colors shared by the whole model, at least 1. 0 or none keeps the model colors";
 
     public static void main(String[] args) throws Exception {
+        int maxColors;
+        try {
+            maxColors = parseColors(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
         TexturePaths.prepare();
-        gui(selectModel());
+        gui(selectModel(maxColors));
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message for the user when the arguments aren't a valid color count
+     */
+    public static int parseColors(String[] args) {
+        if (args.length == 0) {
+            return 0;
+        }
+        if (args.length > 1) {
+            throw new IllegalArgumentException("Expected at most one argument, got " + args.length);
+        }
+        int maxColors;
+        try {
+            maxColors = Integer.parseInt(args[0].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a color count: " + args[0]);
+        }
+        checkColors(maxColors);
+        return maxColors;
+    }
+
+    private static void checkColors(int maxColors) {
+        if (maxColors != 0) {
+            Quantizer.checkColorCount(maxColors);
+        }
     }
     public static HashMap<String, PalletedImage> selectModel() throws Exception {
+        return selectModel(0);
+    }
+
+    /**
+     * @param maxColors quantize the whole model to this many colors, {@code 0} keeps the model colors
+     */
+    public static HashMap<String, PalletedImage> selectModel(int maxColors) throws Exception {
+        checkColors(maxColors);
         FileDialog dialog = new FileDialog((Frame)null, "Select model");
         dialog.setDirectory(Path.of(".").toAbsolutePath().toString());
         dialog.setMode(FileDialog.LOAD);
         dialog.setVisible(true);
         String file = dialog.getFile();
         dialog.dispose();
-        return VoxelParser.parse(GSON.fromJson(Files.readString(Path.of(".").resolve(file)),VoxelModel.class));
+        var layers = VoxelParser.parse(Path.of(".").resolve(file));
+        return (maxColors > 0 ? layers.quantize(maxColors) : layers).named();
     }
 }
@@ -0,0 +1,64 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import java.util.Arrays;
+
+/**
+ * Voxels as parallel primitive arrays, index {@code i} of {@link #x}, {@link #y}, {@link #z}
+ * and {@link #argb} describes one voxel. Only the first {@link #size} entries are valid.
+ */
+public class VoxelBuffer implements VoxelJsonReader.VoxelConsumer {
+    public int width;
+    public int height;
+    public int depth;
+    public int[] x;
+    public int[] y;
+    public int[] z;
+    public int[] argb;
+    public int size;
+
+    public VoxelBuffer() {
+        this(1024);
+    }
+
+    public VoxelBuffer(int capacity) {
+        x = new int[capacity];
+        y = new int[capacity];
+        z = new int[capacity];
+        argb = new int[capacity];
+    }
+
+    public static VoxelBuffer of(VoxelModel model) {
+        var buffer = new VoxelBuffer(Math.max(1, model.voxels.size()));
+        if (!model.dimension.isEmpty()) {
+            var d = model.dimension.getFirst();
+            buffer.dimensions(d.width, d.height, d.depth);
+        }
+        for (var entry : model.voxels) {
+            buffer.voxel(entry.x, entry.y, entry.z, 0xFF000000 | (entry.red & 0xFF) << 16 | (entry.green & 0xFF) << 8 | entry.blue & 0xFF);
+        }
+        return buffer;
+    }
+
+    @Override
+    public void dimensions(int width, int height, int depth) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+    }
+
+    @Override
+    public void voxel(int x, int y, int z, int argb) {
+        if (size == this.x.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, this.x.length * 2L);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+            this.argb = Arrays.copyOf(this.argb, capacity);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.z[size] = z;
+        this.argb[size] = argb;
+        size++;
+    }
+}
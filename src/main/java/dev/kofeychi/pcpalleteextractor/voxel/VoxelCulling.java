@@ -0,0 +1,129 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import java.util.stream.IntStream;
+
+/**
+ * Finds the voxels that can be seen from outside of the model.
+ * A face is exposed when the cell next to it is empty, or with {@code floodFill} only when that empty cell is
+ * connected to the outside, which also drops the walls of sealed hollow rooms.
+ * Occupancy and reachable air are kept as bitsets, the face pass runs in parallel over slabs of y.
+ */
+public class VoxelCulling {
+    public static final int NEG_X = 1, POS_X = 1 << 1, NEG_Y = 1 << 2, POS_Y = 1 << 3, NEG_Z = 1 << 4, POS_Z = 1 << 5;
+    /**
+     * Layers per parallel slab of the face pass.
+     */
+    public static final int SLAB = 8;
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & 1L << i) != 0;
+    }
+
+    public static long[] occupancy(VoxelVolume volume) {
+        var cells = volume.cells();
+        var bits = new long[(cells.length + 63) >>> 6];
+        // one word per task, neighbouring tasks never share a word
+        IntStream.range(0, bits.length).parallel().forEach(w -> {
+            long word = 0;
+            for (int i = w << 6, end = Math.min(cells.length, i + 64); i < end; i++) {
+                if (cells[i] != 0) word |= 1L << i;
+            }
+            bits[w] = word;
+        });
+        return bits;
+    }
+
+    /**
+     * Empty cells connected to the outside of the volume through empty cells, the volume border counts as outside.
+     */
+    public static long[] outsideAir(VoxelVolume volume, long[] occupancy) {
+        int w = volume.width, h = volume.height, d = volume.depth;
+        var air = new long[occupancy.length];
+        var queue = new int[Math.max(1, w * h * d)];
+        int head = 0, tail = 0;
+        for (int y = 0; y < h; y++) {
+            for (int z = 0; z < d; z++) {
+                for (int x = 0; x < w; x++) {
+                    if (x != 0 && y != 0 && z != 0 && x != w - 1 && y != h - 1 && z != d - 1) {
+                        x = w - 2; // jump to the far border of the row
+                        continue;
+                    }
+                    int i = volume.index(x, y, z);
+                    if (!get(occupancy, i) && !get(air, i)) {
+                        air[i >>> 6] |= 1L << i;
+                        queue[tail++] = i;
+                    }
+                }
+            }
+        }
+        int layer = w * d;
+        while (head < tail) {
+            int i = queue[head++];
+            int x = i % w;
+            int z = i / w % d;
+            int y = i / layer;
+            if (x > 0) tail = visit(occupancy, air, queue, tail, i - 1);
+            if (x < w - 1) tail = visit(occupancy, air, queue, tail, i + 1);
+            if (z > 0) tail = visit(occupancy, air, queue, tail, i - w);
+            if (z < d - 1) tail = visit(occupancy, air, queue, tail, i + w);
+            if (y > 0) tail = visit(occupancy, air, queue, tail, i - layer);
+            if (y < h - 1) tail = visit(occupancy, air, queue, tail, i + layer);
+        }
+        return air;
+    }
+
+    private static int visit(long[] occupancy, long[] air, int[] queue, int tail, int i) {
+        if (!get(occupancy, i) && !get(air, i)) {
+            air[i >>> 6] |= 1L << i;
+            queue[tail++] = i;
+        }
+        return tail;
+    }
+
+    /**
+     * @return exposed face mask per cell ({@link #NEG_X} .. {@link #POS_Z}), {@code 0} for empty or hidden cells
+     */
+    public static byte[] exposedFaces(VoxelVolume volume, boolean floodFill) {
+        int w = volume.width, h = volume.height, d = volume.depth;
+        var occupancy = occupancy(volume);
+        var air = floodFill ? outsideAir(volume, occupancy) : null;
+        var faces = new byte[volume.cells().length];
+        int layer = w * d;
+        IntStream.range(0, (h + SLAB - 1) / SLAB).parallel().forEach(slab -> {
+            for (int y = slab * SLAB, endY = Math.min(h, y + SLAB); y < endY; y++) {
+                for (int z = 0; z < d; z++) {
+                    for (int x = 0, i = volume.index(0, y, z); x < w; x++, i++) {
+                        if (!get(occupancy, i)) continue;
+                        int mask = 0;
+                        if (x == 0 || open(occupancy, air, i - 1)) mask |= NEG_X;
+                        if (x == w - 1 || open(occupancy, air, i + 1)) mask |= POS_X;
+                        if (y == 0 || open(occupancy, air, i - layer)) mask |= NEG_Y;
+                        if (y == h - 1 || open(occupancy, air, i + layer)) mask |= POS_Y;
+                        if (z == 0 || open(occupancy, air, i - w)) mask |= NEG_Z;
+                        if (z == d - 1 || open(occupancy, air, i + w)) mask |= POS_Z;
+                        faces[i] = (byte) mask;
+                    }
+                }
+            }
+        });
+        return faces;
+    }
+
+    private static boolean open(long[] occupancy, long[] air, int i) {
+        return air == null ? !get(occupancy, i) : get(air, i);
+    }
+
+    /**
+     * Copy of {@code volume} without the voxels that have no exposed face.
+     */
+    public static VoxelVolume cull(VoxelVolume volume, boolean floodFill) {
+        var faces = exposedFaces(volume, floodFill);
+        var cells = volume.cells().clone();
+        for (int i = 0; i < cells.length; i++) {
+            if (faces[i] == 0) {
+                cells[i] = 0;
+            }
+        }
+        return new VoxelVolume(volume.width, volume.height, volume.depth, volume.palette, cells, volume.clipped);
+    }
+}
@@ -0,0 +1,100 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary dump of a {@link VoxelBuffer}, read back through {@link FileChannel#map}.
+ * <p>
+ * Layout (big endian): int magic, int version, int width, height, depth, int palette size, int[] palette,
+ * int voxel count, then per voxel four unsigned shorts x, y, z and palette slot.
+ */
+public class VoxelDump {
+    public static final int MAGIC = 0x50435658; // "PCVX"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".pcvx";
+    private static final int MAX_COORD = 0xFFFF;
+
+    public static void write(Path path, VoxelBuffer voxels) throws IOException {
+        var slots = new Int2IntOpenHashMap();
+        slots.defaultReturnValue(-1);
+        var palette = new IntArrayList();
+        for (int i = 0; i < voxels.size; i++) {
+            if (voxels.x[i] < 0 || voxels.y[i] < 0 || voxels.z[i] < 0
+                    || voxels.x[i] > MAX_COORD || voxels.y[i] > MAX_COORD || voxels.z[i] > MAX_COORD) {
+                throw new IllegalArgumentException("Voxel " + i + " outside of 0.." + MAX_COORD);
+            }
+            if (slots.get(voxels.argb[i]) == -1) {
+                slots.put(voxels.argb[i], palette.size());
+                palette.add(voxels.argb[i]);
+            }
+        }
+        if (palette.size() > MAX_COORD + 1) {
+            throw new IllegalArgumentException("More than " + (MAX_COORD + 1) + " colors");
+        }
+        var buffer = ByteBuffer.allocate((7 + palette.size()) * Integer.BYTES + voxels.size * 4 * Short.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(voxels.width).putInt(voxels.height).putInt(voxels.depth)
+                .putInt(palette.size());
+        for (int i = 0; i < palette.size(); i++) {
+            buffer.putInt(palette.getInt(i));
+        }
+        buffer.putInt(voxels.size);
+        for (int i = 0; i < voxels.size; i++) {
+            buffer.putShort((short) voxels.x[i]).putShort((short) voxels.y[i]).putShort((short) voxels.z[i])
+                    .putShort((short) slots.get(voxels.argb[i]));
+        }
+        buffer.flip();
+        var tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static void read(Path path, VoxelJsonReader.VoxelConsumer consumer) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 6 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a voxel dump or written by another version");
+            }
+            consumer.dimensions(buffer.getInt(), buffer.getInt(), buffer.getInt());
+            int colors = buffer.getInt();
+            if (colors < 0 || buffer.remaining() < (long) colors * Integer.BYTES + Integer.BYTES) {
+                throw new IOException("Truncated palette");
+            }
+            var palette = new int[colors];
+            buffer.asIntBuffer().get(palette);
+            buffer.position(buffer.position() + colors * Integer.BYTES);
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * 4 * Short.BYTES) {
+                throw new IOException("Truncated voxels");
+            }
+            var shorts = buffer.asShortBuffer();
+            for (int i = 0; i < count; i++) {
+                int x = shorts.get() & 0xFFFF;
+                int y = shorts.get() & 0xFFFF;
+                int z = shorts.get() & 0xFFFF;
+                int slot = shorts.get() & 0xFFFF;
+                if (slot >= colors) {
+                    throw new IOException("Bad palette slot " + slot);
+                }
+                consumer.voxel(x, y, z, palette[slot]);
+            }
+        }
+    }
+}
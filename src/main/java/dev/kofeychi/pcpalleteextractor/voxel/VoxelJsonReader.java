@@ -0,0 +1,95 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the voxel JSON export token by token and hands every voxel to a {@link VoxelConsumer},
+ * no {@link VoxelModel} and no per-voxel objects are created.
+ * Same layout as {@link VoxelModel}, unknown properties are skipped.
+ */
+public class VoxelJsonReader {
+    public static final int BUFFER_CHARS = 1 << 16;
+
+    public interface VoxelConsumer {
+        void dimensions(int width, int height, int depth);
+
+        /**
+         * @param argb opaque voxel color
+         */
+        void voxel(int x, int y, int z, int argb);
+    }
+
+    public static void read(Path path, VoxelConsumer consumer) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ);
+             var reader = new JsonReader(new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_CHARS))) {
+            reader.setLenient(true);
+            read(reader, consumer);
+        }
+    }
+
+    public static void read(JsonReader reader, VoxelConsumer consumer) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "dimension" -> readDimensions(reader, consumer);
+                case "voxels" -> readVoxels(reader, consumer);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readDimensions(JsonReader reader, VoxelConsumer consumer) throws IOException {
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            int width = 0, height = 0, depth = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "width" -> width = reader.nextInt();
+                    case "height" -> height = reader.nextInt();
+                    case "depth" -> depth = reader.nextInt();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            // the parser only ever used the first entry
+            if (first) {
+                consumer.dimensions(width, height, depth);
+                first = false;
+            }
+        }
+        reader.endArray();
+    }
+
+    private static void readVoxels(JsonReader reader, VoxelConsumer consumer) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int x = 0, y = 0, z = 0, red = 0, green = 0, blue = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "x" -> x = reader.nextInt();
+                    case "y" -> y = reader.nextInt();
+                    case "z" -> z = reader.nextInt();
+                    case "red" -> red = reader.nextInt();
+                    case "green" -> green = reader.nextInt();
+                    case "blue" -> blue = reader.nextInt();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            consumer.voxel(x, y, z, 0xFF000000 | (red & 0xFF) << 16 | (green & 0xFF) << 8 | blue & 0xFF);
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,287 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.quantize.ColorDistance;
+import dev.kofeychi.pcpalleteextractor.quantize.NearestColorIndex;
+import dev.kofeychi.pcpalleteextractor.quantize.Quantizer;
+import dev.kofeychi.pcpalleteextractor.quantize.RgbHistogram;
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Horizontal slices of a voxel model keyed by their y.
+ * Streamed models go through a {@link Slicer} that fills one builder per layer as voxels arrive. A {@link VoxelBuffer}
+ * already in memory is partitioned by layer with a parallel counting sort and every layer is built concurrently,
+ * voxels of a layer keep their input order so the result matches a sequential pass.
+ * <p>
+ * Layer positions are packed by {@link PalleteBuilder}, so a model with negative x or z is shifted by its minimum
+ * to start at zero, the same shift for every layer, and layers grow to cover every voxel.
+ */
+public class VoxelLayers {
+    /**
+     * Voxels per counting chunk.
+     */
+    public static final int CHUNK = 1 << 16;
+
+    public final Int2ObjectMap<PalletedImage> layers;
+    /**
+     * Palette shared by every layer after {@link #quantize}, {@code null} when layers keep the model colors.
+     */
+    public final int[] palette;
+
+    public VoxelLayers(Int2ObjectMap<PalletedImage> layers) {
+        this(layers, null);
+    }
+
+    public VoxelLayers(Int2ObjectMap<PalletedImage> layers, int[] palette) {
+        this.layers = layers;
+        this.palette = palette;
+    }
+
+    /**
+     * Consumer that files every voxel straight into the builder of its layer, so a streamed model is sliced
+     * without holding its voxels in a {@link VoxelBuffer} first.
+     */
+    public static class Slicer implements VoxelJsonReader.VoxelConsumer {
+        private Int2ObjectOpenHashMap<PalleteBuilder> builders = new Int2ObjectOpenHashMap<>();
+        /**
+         * Takes over once a voxel doesn't fit the packing, the shift is only known after the last voxel.
+         */
+        private VoxelBuffer spilled;
+        private int width;
+        private int height;
+        private int depth;
+        private int maxX = -1;
+        private int maxZ = -1;
+
+        @Override
+        public void dimensions(int width, int height, int depth) {
+            this.width = width;
+            this.height = height;
+            this.depth = depth;
+        }
+
+        @Override
+        public void voxel(int x, int y, int z, int argb) {
+            if (spilled == null && ((x | z) < 0 || x > PalleteBuilder.MAX_COORDINATE || z > PalleteBuilder.MAX_COORDINATE)) {
+                spill();
+            }
+            if (spilled != null) {
+                spilled.voxel(x, y, z, argb);
+                return;
+            }
+            var builder = builders.get(y);
+            if (builder == null) {
+                builder = new PalleteBuilder();
+                builders.put(y, builder);
+            }
+            builder.add(argb, x, z);
+            maxX = Math.max(maxX, x);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        /**
+         * Moves the voxels so far into a buffer. Per layer they come out grouped by color, which builds the same layer.
+         */
+        private void spill() {
+            spilled = new VoxelBuffer();
+            spilled.dimensions(width, height, depth);
+            for (var entry : builders.int2ObjectEntrySet()) {
+                var builder = entry.getValue();
+                for (int slot = 0; slot < builder.colorCount(); slot++) {
+                    var positions = builder.positions(slot);
+                    for (int k = 0; k < positions.size(); k++) {
+                        int p = positions.getInt(k);
+                        spilled.voxel(PalleteBuilder.unpackX(p), entry.getIntKey(), PalleteBuilder.unpackY(p), builder.color(slot));
+                    }
+                }
+            }
+            builders = null;
+        }
+
+        public VoxelLayers layers() {
+            if (spilled != null) {
+                return slice(spilled);
+            }
+            var size = new Vector2i(Math.max(width, maxX + 1), Math.max(depth, maxZ + 1));
+            var keys = builders.keySet().toIntArray();
+            var images = new PalletedImage[keys.length];
+            IntStream.range(0, keys.length).parallel()
+                    .forEach(k -> images[k] = builders.get(keys[k]).build(new Vector2i(size.x, size.y)));
+            var layers = new Int2ObjectOpenHashMap<PalletedImage>(keys.length);
+            for (int k = 0; k < keys.length; k++) {
+                layers.put(keys[k], images[k]);
+            }
+            return new VoxelLayers(layers);
+        }
+    }
+
+    public static VoxelLayers slice(VoxelBuffer voxels) {
+        int n = voxels.size;
+        if (n == 0) {
+            return new VoxelLayers(new Int2ObjectOpenHashMap<>());
+        }
+        int[] xs = voxels.x, ys = voxels.y, zs = voxels.z;
+        int minY = IntStream.range(0, n).parallel().map(i -> ys[i]).min().getAsInt();
+        int maxY = IntStream.range(0, n).parallel().map(i -> ys[i]).max().getAsInt();
+        int originX = Math.min(0, IntStream.range(0, n).parallel().map(i -> xs[i]).min().getAsInt());
+        int originZ = Math.min(0, IntStream.range(0, n).parallel().map(i -> zs[i]).min().getAsInt());
+        long spanX = IntStream.range(0, n).parallel().map(i -> xs[i]).max().getAsInt() - (long) originX + 1;
+        long spanZ = IntStream.range(0, n).parallel().map(i -> zs[i]).max().getAsInt() - (long) originZ + 1;
+        if (spanX > PalleteBuilder.MAX_COORDINATE + 1 || spanZ > PalleteBuilder.MAX_COORDINATE + 1) {
+            throw new IllegalArgumentException("Model spans " + spanX + " x " + spanZ + " voxels, layers fit at most "
+                    + (PalleteBuilder.MAX_COORDINATE + 1));
+        }
+        var size = new Vector2i(Math.max(voxels.width, (int) spanX), Math.max(voxels.depth, (int) spanZ));
+        // a range wider than the voxel count is mostly empty, layers are then numbered by their sorted y
+        long range = (long) maxY - minY + 1;
+        int[] keys = null;
+        int layerCount;
+        if (range <= n) {
+            layerCount = (int) range;
+        } else {
+            var distinct = new IntOpenHashSet();
+            for (int i = 0; i < n; i++) {
+                distinct.add(ys[i]);
+            }
+            keys = distinct.toIntArray();
+            Arrays.sort(keys);
+            layerCount = keys.length;
+        }
+        int[] sorted = keys;
+        // fewer chunks when there are many layers, so the count arrays together stay within n ints
+        int chunks = Math.max(1, Math.min((n + CHUNK - 1) / CHUNK, n / layerCount));
+        int chunkSize = (n + chunks - 1) / chunks;
+
+        // 1. Count voxels per layer in every chunk
+        var counts = new int[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            var count = new int[layerCount];
+            for (int i = c * chunkSize, end = Math.min(n, i + chunkSize); i < end; i++) {
+                count[layer(ys[i], minY, sorted)]++;
+            }
+            counts[c] = count;
+        });
+
+        // 2. Turn counts into write offsets, layer major so each layer ends up contiguous and in input order
+        var layerStart = new int[layerCount + 1];
+        int offset = 0;
+        for (int layer = 0; layer < layerCount; layer++) {
+            layerStart[layer] = offset;
+            for (int c = 0; c < chunks; c++) {
+                int count = counts[c][layer];
+                counts[c][layer] = offset;
+                offset += count;
+            }
+        }
+        layerStart[layerCount] = offset;
+
+        // 3. Scatter voxel indices
+        var order = new int[n];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            var next = counts[c];
+            for (int i = c * chunkSize, end = Math.min(n, i + chunkSize); i < end; i++) {
+                order[next[layer(ys[i], minY, sorted)]++] = i;
+            }
+        });
+
+        // 4. Build the layers
+        var images = new PalletedImage[layerCount];
+        IntStream.range(0, layerCount).parallel().forEach(layer -> {
+            int from = layerStart[layer];
+            int to = layerStart[layer + 1];
+            if (from == to) {
+                return;
+            }
+            var builder = new PalleteBuilder();
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                builder.add(voxels.argb[i], xs[i] - originX, zs[i] - originZ);
+            }
+            images[layer] = builder.build(new Vector2i(size.x, size.y));
+        });
+        var layers = new Int2ObjectOpenHashMap<PalletedImage>();
+        for (int layer = 0; layer < layerCount; layer++) {
+            if (images[layer] != null) {
+                layers.put(keys == null ? layer + minY : keys[layer], images[layer]);
+            }
+        }
+        return new VoxelLayers(layers);
+    }
+
+    private static int layer(int y, int minY, int[] keys) {
+        return keys == null ? y - minY : Arrays.binarySearch(keys, y);
+    }
+
+    /**
+     * Color histogram of every layer together, each voxel counts once.
+     */
+    public RgbHistogram histogram() {
+        return layers.values().parallelStream().collect(RgbHistogram::new, (histogram, image) -> {
+            for (var entry : image.palletes().entrySet()) {
+                histogram.add(entry.getKey().getColor(), entry.getValue().size());
+            }
+        }, RgbHistogram::merge);
+    }
+
+    public VoxelLayers quantize(int maxColors) {
+        return quantize(maxColors, Quantizer.wu(), NearestColorIndex.Mode.INVERSE_COLORMAP, ColorDistance.RGB);
+    }
+
+    /**
+     * Quantizes the histogram of the whole model once and remaps every layer to that palette in parallel,
+     * so the whole model needs at most {@code maxColors} colors. Positions that end up on the same color are merged.
+     */
+    public VoxelLayers quantize(int maxColors, Quantizer quantizer, NearestColorIndex.Mode lookup, ColorDistance distance) {
+        Quantizer.checkColorCount(maxColors);
+        var histogram = histogram();
+        if (histogram.isEmpty()) {
+            return new VoxelLayers(new Int2ObjectOpenHashMap<>(layers), new int[0]);
+        }
+        var shared = quantizer.quantize(histogram, maxColors);
+        var index = NearestColorIndex.create(lookup, shared, distance);
+        var keys = layers.keySet().toIntArray();
+        var remapped = new PalletedImage[keys.length];
+        IntStream.range(0, keys.length).parallel().forEach(k -> remapped[k] = remap(layers.get(keys[k]), index));
+        var out = new Int2ObjectOpenHashMap<PalletedImage>();
+        for (int k = 0; k < keys.length; k++) {
+            out.put(keys[k], remapped[k]);
+        }
+        return new VoxelLayers(out, shared);
+    }
+
+    private static PalletedImage remap(PalletedImage image, NearestColorIndex index) {
+        var out = new PalletedImage(new Object2ObjectRBTreeMap<>(), image.size());
+        for (var entry : image.palletes().entrySet()) {
+            var color = ARGBColor.ofOpaque(index.nearest(entry.getKey().getColor()));
+            var positions = out.palletes().get(color);
+            if (positions == null) {
+                positions = new ObjectArrayList<>(entry.getValue().size());
+                out.palletes().put(color, positions);
+            }
+            positions.addAll(entry.getValue());
+        }
+        return out;
+    }
+
+    /**
+     * Layers keyed by their name in the GUI.
+     */
+    public HashMap<String, PalletedImage> named() {
+        var map = new HashMap<String, PalletedImage>();
+        for (var entry : layers.int2ObjectEntrySet()) {
+            map.put(Integer.toString(entry.getIntKey()), entry.getValue());
+        }
+        return map;
+    }
+}
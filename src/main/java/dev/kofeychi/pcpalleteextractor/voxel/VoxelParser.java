@@ -1,29 +1,66 @@
 package dev.kofeychi.pcpalleteextractor.voxel;
 
-import com.google.gson.Gson;
 import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
-import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
-import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import org.joml.Vector2i;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Locale;
 
 public class VoxelParser {
-    public static HashMap<String, PalletedImage> parse(VoxelModel model){
-        var map = new HashMap<String, PalletedImage>();
-        for(VoxelModel.VoxelEntry entry : model.voxels) {
-            var color = ARGBColor.ofRGB(entry.red, entry.green, entry.blue);
-            if(!map.containsKey(""+entry.y)) {
-                var d = model.dimension.getFirst();
-                map.put(""+entry.y,new PalletedImage(new Object2ObjectRBTreeMap<>(),new Vector2i(d.width,d.depth)));
-            }
-            var palletes = map.get(""+entry.y).palletes();
-            if(!palletes.containsKey(color)) {
-                palletes.put(color,new ObjectArrayList<>());
-            }
-            palletes.get(color).add(new Vector2i(entry.x,entry.z));
+    public static VoxelLayers parse(VoxelModel model){
+        return VoxelLayers.slice(VoxelBuffer.of(model));
+    }
+
+    /**
+     * Streams {@code path} into one builder per layer, see {@link VoxelLayers.Slicer}.
+     */
+    public static VoxelLayers parse(Path path) throws IOException {
+        var slicer = new VoxelLayers.Slicer();
+        read(path, slicer);
+        return slicer.layers();
+    }
+
+    /**
+     * Like {@link #parse(Path)} but layers only hold voxels with at least one face visible from outside.
+     *
+     * @param floodFill also drop voxels that only face sealed hollow interiors
+     */
+    public static VoxelLayers parseVisible(Path path, boolean floodFill) throws IOException {
+        return VoxelCulling.cull(volume(path), floodFill).slices(VoxelVolume.Axis.Y);
+    }
+
+    /**
+     * The six outer views of the model keyed like block sides, see {@link VoxelProjector}.
+     */
+    public static HashMap<String, PalletedImage> sides(Path path) throws IOException {
+        return VoxelProjector.project(volume(path));
+    }
+
+    public static VoxelBuffer read(Path path) throws IOException {
+        var buffer = new VoxelBuffer();
+        read(path, buffer);
+        return buffer;
+    }
+
+    /**
+     * Picks the reader by extension: MagicaVoxel {@code .vox}, our {@link VoxelDump}, JSON otherwise.
+     */
+    public static void read(Path path, VoxelJsonReader.VoxelConsumer consumer) throws IOException {
+        var name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".vox")) {
+            MagicaVoxelReader.read(path, consumer);
+        } else if (name.endsWith(VoxelDump.EXTENSION)) {
+            VoxelDump.read(path, consumer);
+        } else {
+            VoxelJsonReader.read(path, consumer);
         }
-        return map;
+    }
+
+    /**
+     * Reads {@code path} into a dense {@link VoxelVolume} that can be sliced along any axis.
+     */
+    public static VoxelVolume volume(Path path) throws IOException {
+        return VoxelVolume.of(read(path));
     }
 }
@@ -0,0 +1,73 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import org.joml.Vector2i;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Orthographic views of a {@link VoxelVolume} from its six sides, keyed like block model textures.
+ * Each pixel walks its ray into the volume and stops at the first solid voxel, so a view costs at most its volume
+ * and usually much less. The six views are computed in parallel.
+ * Views are oriented as seen from outside with up on top, north looks along +z, east along -x.
+ */
+public class VoxelProjector {
+
+    public enum View {
+        UP, DOWN, NORTH, SOUTH, EAST, WEST;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static HashMap<String, PalletedImage> project(VoxelVolume volume) {
+        var images = new PalletedImage[View.values().length];
+        Arrays.stream(View.values()).parallel().forEach(view -> images[view.ordinal()] = project(volume, view));
+        var out = new HashMap<String, PalletedImage>();
+        for (var view : View.values()) {
+            out.put(view.key(), images[view.ordinal()]);
+        }
+        return out;
+    }
+
+    public static PalletedImage project(VoxelVolume volume, View view) {
+        int w = volume.width, h = volume.height, d = volume.depth;
+        int layer = w * d;
+        var cells = volume.cells();
+        // image size, ray step and ray length
+        int width, height, stride, length;
+        switch (view) {
+            case UP -> { width = w; height = d; stride = -layer; length = h; }
+            case DOWN -> { width = w; height = d; stride = layer; length = h; }
+            case NORTH -> { width = w; height = h; stride = w; length = d; }
+            case SOUTH -> { width = w; height = h; stride = -w; length = d; }
+            case EAST -> { width = d; height = h; stride = -1; length = w; }
+            default -> { width = d; height = h; stride = 1; length = w; }
+        }
+        var builder = new PalleteBuilder();
+        for (int v = 0; v < height; v++) {
+            for (int u = 0; u < width; u++) {
+                int i = switch (view) {
+                    case UP -> volume.index(u, h - 1, v);
+                    case DOWN -> volume.index(u, 0, d - 1 - v);
+                    case NORTH -> volume.index(w - 1 - u, h - 1 - v, 0);
+                    case SOUTH -> volume.index(u, h - 1 - v, d - 1);
+                    case EAST -> volume.index(w - 1, h - 1 - v, d - 1 - u);
+                    case WEST -> volume.index(0, h - 1 - v, u);
+                };
+                for (int t = 0; t < length; t++, i += stride) {
+                    int slot = cells[i] & 0xFFFF;
+                    if (slot != 0) {
+                        builder.add(volume.palette[slot], u, v);
+                        break;
+                    }
+                }
+            }
+        }
+        return builder.build(new Vector2i(width, height));
+    }
+}
@@ -0,0 +1,200 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.joml.Vector2i;
+
+import java.util.stream.IntStream;
+
+/**
+ * Dense voxel grid, each cell holds an index into {@link #palette}, {@code 0} is empty.
+ * Built once, after that any slice along X, Y or Z costs only its area.
+ * <p>
+ * Slice images: Y slices are {@code width x depth} with pixels at {@code (x, z)} like {@link VoxelLayers},
+ * Z slices are {@code width x height} at {@code (x, height - 1 - y)} and X slices {@code depth x height}
+ * at {@code (z, height - 1 - y)}, so the top of the model is the top of the image.
+ */
+public class VoxelVolume {
+    public static final int MAX_COLORS = 0xFFFF;
+
+    public enum Axis {
+        X, Y, Z
+    }
+
+    public final int width;
+    public final int height;
+    public final int depth;
+    /**
+     * Colors by cell value, entry {@code 0} stands for empty cells.
+     */
+    public final int[] palette;
+    private final short[] cells;
+    /**
+     * Voxels that fell outside of the bounds and were dropped.
+     */
+    public final int clipped;
+
+    public VoxelVolume(int width, int height, int depth, int[] palette, short[] cells, int clipped) {
+        if ((long) width * height * depth != cells.length) {
+            throw new IllegalArgumentException("Cell count doesn't match " + width + "x" + height + "x" + depth);
+        }
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.palette = palette;
+        this.cells = cells;
+        this.clipped = clipped;
+    }
+
+    /**
+     * Uses the buffer's dimensions when it has them, otherwise the smallest box from the origin that holds every voxel.
+     * Voxels outside of the bounds are counted in {@link #clipped}, later voxels overwrite earlier ones in the same cell.
+     */
+    public static VoxelVolume of(VoxelBuffer voxels) {
+        int width = voxels.width, height = voxels.height, depth = voxels.depth;
+        if (width <= 0 || height <= 0 || depth <= 0) {
+            width = height = depth = 1;
+            for (int i = 0; i < voxels.size; i++) {
+                width = Math.max(width, voxels.x[i] + 1);
+                height = Math.max(height, voxels.y[i] + 1);
+                depth = Math.max(depth, voxels.z[i] + 1);
+            }
+        }
+        long volume = (long) width * height * depth;
+        if (volume > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Volume too large: " + width + "x" + height + "x" + depth);
+        }
+        var cells = new short[(int) volume];
+        var slots = new Int2IntOpenHashMap();
+        var palette = new IntArrayList();
+        palette.add(0);
+        int clipped = 0;
+        for (int i = 0; i < voxels.size; i++) {
+            int x = voxels.x[i], y = voxels.y[i], z = voxels.z[i];
+            if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= depth) {
+                clipped++;
+                continue;
+            }
+            int color = voxels.argb[i];
+            int slot = slots.get(color);
+            if (slot == 0) {
+                slot = palette.size();
+                if (slot > MAX_COLORS) {
+                    throw new IllegalStateException("More than " + MAX_COLORS + " colors in the model");
+                }
+                slots.put(color, slot);
+                palette.add(color);
+            }
+            cells[(y * depth + z) * width + x] = (short) slot;
+        }
+        return new VoxelVolume(width, height, depth, palette.toIntArray(), cells, clipped);
+    }
+
+    short[] cells() {
+        return cells;
+    }
+
+    public int index(int x, int y, int z) {
+        return (y * depth + z) * width + x;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < depth;
+    }
+
+    /**
+     * @return palette slot of the cell, {@code 0} when empty
+     */
+    public int slot(int x, int y, int z) {
+        return cells[index(x, y, z)] & 0xFFFF;
+    }
+
+    public int slotAt(int index) {
+        return cells[index] & 0xFFFF;
+    }
+
+    public void setSlot(int x, int y, int z, int slot) {
+        cells[index(x, y, z)] = (short) slot;
+    }
+
+    public boolean isSolid(int x, int y, int z) {
+        return cells[index(x, y, z)] != 0;
+    }
+
+    public int color(int x, int y, int z) {
+        return palette[slot(x, y, z)];
+    }
+
+    public int size(Axis axis) {
+        return switch (axis) {
+            case X -> width;
+            case Y -> height;
+            case Z -> depth;
+        };
+    }
+
+    public Vector2i sliceSize(Axis axis) {
+        return switch (axis) {
+            case X -> new Vector2i(depth, height);
+            case Y -> new Vector2i(width, depth);
+            case Z -> new Vector2i(width, height);
+        };
+    }
+
+    /**
+     * @return the slice, {@code null} when it has no voxels
+     */
+    public PalletedImage slice(Axis axis, int at) {
+        if (at < 0 || at >= size(axis)) {
+            throw new IndexOutOfBoundsException(axis + " slice " + at + " outside of 0.." + (size(axis) - 1));
+        }
+        var builder = new PalleteBuilder();
+        switch (axis) {
+            case Y -> {
+                for (int z = 0; z < depth; z++) {
+                    int row = index(0, at, z);
+                    for (int x = 0; x < width; x++) {
+                        int slot = cells[row + x] & 0xFFFF;
+                        if (slot != 0) builder.add(palette[slot], x, z);
+                    }
+                }
+            }
+            case Z -> {
+                for (int y = 0; y < height; y++) {
+                    int row = index(0, y, at);
+                    for (int x = 0; x < width; x++) {
+                        int slot = cells[row + x] & 0xFFFF;
+                        if (slot != 0) builder.add(palette[slot], x, height - 1 - y);
+                    }
+                }
+            }
+            case X -> {
+                for (int y = 0; y < height; y++) {
+                    for (int z = 0; z < depth; z++) {
+                        int slot = cells[index(at, y, z)] & 0xFFFF;
+                        if (slot != 0) builder.add(palette[slot], z, height - 1 - y);
+                    }
+                }
+            }
+        }
+        return builder.colorCount() == 0 ? null : builder.build(sliceSize(axis));
+    }
+
+    /**
+     * Every non-empty slice along {@code axis}, built in parallel.
+     */
+    public VoxelLayers slices(Axis axis) {
+        var images = new PalletedImage[size(axis)];
+        IntStream.range(0, images.length).parallel().forEach(at -> images[at] = slice(axis, at));
+        var layers = new Int2ObjectOpenHashMap<PalletedImage>();
+        for (int at = 0; at < images.length; at++) {
+            if (images[at] != null) {
+                layers.put(at, images[at]);
+            }
+        }
+        return new VoxelLayers(layers);
+    }
+}
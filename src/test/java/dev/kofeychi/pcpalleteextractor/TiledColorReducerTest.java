@@ -0,0 +1,120 @@
+package dev.kofeychi.pcpalleteextractor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TiledColorReducerTest {
+
+    static BufferedImage image(int type, int width, int height) {
+        var random = new Random(1);
+        var image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 7) ^ (y * 13) << 8 ^ random.nextInt(64));
+            }
+        }
+        return image;
+    }
+
+    static Path write(Path directory, String name, BufferedImage image, String format, boolean progressive) throws IOException {
+        var path = directory.resolve(name);
+        var writer = ImageIO.getImageWritersByFormatName(format).next();
+        var param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        try (var out = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return path;
+    }
+
+    static int[] strips(Path path, int stripRows) throws IOException {
+        try (var in = ImageIO.createImageInputStream(path.toFile())) {
+            var reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in, false, true);
+            int width = reader.getWidth(0);
+            var pixels = new int[width * reader.getHeight(0)];
+            int[] next = {0};
+            TiledColorReducer.readStrips(reader, stripRows, (argb, y, rows) -> {
+                // a refining pass starts over from the top
+                assertTrue(y == next[0] || y == 0, "strip at " + y);
+                System.arraycopy(argb, 0, pixels, y * width, rows * width);
+                next[0] = y + rows;
+            });
+            reader.dispose();
+            return pixels;
+        }
+    }
+
+    @Test
+    void stripsMatchTheFullDecode() throws IOException {
+        var directory = Files.createTempDirectory("tiled");
+        var rgb = image(BufferedImage.TYPE_INT_RGB, 131, 257);
+        var files = new Path[]{
+                write(directory, "rgb.png", rgb, "png", false),
+                write(directory, "argb.png", image(BufferedImage.TYPE_INT_ARGB, 131, 257), "png", false),
+                write(directory, "gray.png", image(BufferedImage.TYPE_USHORT_GRAY, 131, 257), "png", false),
+                write(directory, "indexed.png", image(BufferedImage.TYPE_BYTE_INDEXED, 131, 257), "png", false),
+                write(directory, "interlaced.png", rgb, "png", true),
+                write(directory, "rgb.jpg", rgb, "jpg", false),
+                write(directory, "progressive.jpg", rgb, "jpg", true),
+                write(directory, "rgb.bmp", rgb, "bmp", false),
+        };
+        for (var file : files) {
+            var full = ImageIO.read(file.toFile());
+            var expected = full.getRGB(0, 0, full.getWidth(), full.getHeight(), null, 0, full.getWidth());
+            for (int stripRows : new int[]{1, 16, 300}) {
+                assertArrayEquals(expected, strips(file, stripRows), file.getFileName() + " in strips of " + stripRows);
+            }
+        }
+    }
+
+    @Test
+    void reducesInPlace() throws IOException {
+        var directory = Files.createTempDirectory("tiled");
+        var path = write(directory, "image.png", image(BufferedImage.TYPE_INT_RGB, 64, 300), "png", false);
+        TiledColorReducer.reduceColors(path, path, "png", 8);
+        var reduced = ImageIO.read(path.toFile());
+        assertEquals(64, reduced.getWidth());
+        assertEquals(300, reduced.getHeight());
+        var colors = reduced.getRGB(0, 0, 64, 300, null, 0, 64);
+        assertTrue(Arrays.stream(colors).distinct().count() <= 8);
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void colorCountsAreCheckedLikeTheQuantizers() throws IOException {
+        var directory = Files.createTempDirectory("tiled");
+        var path = write(directory, "image.png", image(BufferedImage.TYPE_INT_RGB, 40, 30), "png", false);
+        var image = ImageIO.read(path.toFile());
+        for (int maxColors : new int[]{0, -1}) {
+            var e = assertThrows(IllegalArgumentException.class, () -> ColorReducer.reduceColors(image, maxColors));
+            assertEquals("Color count must be at least 1", e.getMessage());
+            e = assertThrows(IllegalArgumentException.class, () -> TiledColorReducer.reduceColors(path, path, "png", maxColors));
+            assertEquals("Color count must be at least 1", e.getMessage());
+        }
+
+        var single = ColorReducer.reduceColors(image, 1);
+        assertEquals(1, Arrays.stream(single.getRGB(0, 0, 40, 30, null, 0, 40)).distinct().count());
+        TiledColorReducer.reduceColors(path, path, "png", 1);
+        var tiled = ImageIO.read(path.toFile());
+        assertEquals(1, Arrays.stream(tiled.getRGB(0, 0, 40, 30, null, 0, 40)).distinct().count());
+    }
+}
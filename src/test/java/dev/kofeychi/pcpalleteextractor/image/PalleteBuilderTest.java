@@ -0,0 +1,43 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PalleteBuilderTest {
+
+    @Test
+    void packRoundTripsTheWholeRange() {
+        int max = PalleteBuilder.MAX_COORDINATE;
+        int[][] positions = {{0, 0}, {max, 0}, {0, max}, {max, max}, {32767, 32768}, {1234, 54321}};
+        for (var p : positions) {
+            int packed = PalleteBuilder.pack(p[0], p[1]);
+            assertEquals(p[0], PalleteBuilder.unpackX(packed));
+            assertEquals(p[1], PalleteBuilder.unpackY(packed));
+        }
+    }
+
+    @Test
+    void rejectsPositionsOutsideSixteenBits() {
+        var builder = new PalleteBuilder();
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0xFF000000, 65536, 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0xFF000000, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0xFF000000, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0xFF000000, 0, 65536));
+        assertThrows(IllegalArgumentException.class, () -> builder.addRow(new int[65537], 0, 65537, 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.addRow(new int[4], 0, 4, -3));
+        assertEquals(0, builder.colorCount());
+    }
+
+    @Test
+    void compactRejectsPositionsOutsideSixteenBits() {
+        var palletes = new Object2ObjectRBTreeMap<ARGBColor, ObjectArrayList<Vector2i>>();
+        palletes.put(ARGBColor.ofOpaque(0x123456), ObjectArrayList.of(new Vector2i(0, 0), new Vector2i(-2, 5)));
+        var image = new PalletedImage(palletes, new Vector2i(4, 6));
+        assertThrows(IllegalArgumentException.class, () -> CompactPalletedImage.of(image));
+    }
+}
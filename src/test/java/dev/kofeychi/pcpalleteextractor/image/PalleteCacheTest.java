@@ -0,0 +1,95 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PalleteCacheTest {
+
+    static CompactPalletedImage image() {
+        var builder = new PalleteBuilder();
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                builder.add(0xFF000000 | (x + y) % 3 * 0x404040, x, y);
+            }
+        }
+        return builder.toCompact(new Vector2i(7, 5));
+    }
+
+    /**
+     * Overwrites int {@code index} of the entry, counting from the magic.
+     */
+    static void corrupt(Path file, int index, int value) throws IOException {
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(index * Integer.BYTES, value);
+        Files.write(file, bytes);
+    }
+
+    static Path only(Path root) throws IOException {
+        try (var files = Files.list(root)) {
+            return files.filter(f -> f.toString().endsWith(".pal")).findFirst().orElseThrow();
+        }
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        var cache = new PalleteCache(Files.createTempDirectory("cache"), PalleteCache.DEFAULT_MAX_BYTES);
+        var image = image();
+        cache.store("a", image);
+        var loaded = cache.load("a");
+        assertArrayEquals(image.palette(), loaded.palette());
+        assertArrayEquals(image.offsets(), loaded.offsets());
+        assertArrayEquals(image.pixels(), loaded.pixels());
+        assertEquals(image.size(), loaded.size());
+        assertNull(cache.load("b"));
+    }
+
+    @Test
+    void inconsistentEntriesAreMissesAndGetDeleted() throws IOException {
+        var image = image();
+        int colors = image.colorCount();
+        int offsets = 6 + colors;
+        int pixels = offsets + colors + 1;
+        int[][] damage = {
+                {2, -1},                      // width
+                {3, 2},                       // height smaller than the pixels need
+                {offsets, 3},                 // first offset
+                {offsets + 1, 1000},          // offset past the pixels
+                {offsets + colors, 1},        // last offset
+                {pixels, PalleteBuilder.pack(7, 0)},
+                {pixels + 1, PalleteBuilder.pack(0, 5)},
+        };
+        for (var d : damage) {
+            var root = Files.createTempDirectory("cache");
+            var cache = new PalleteCache(root, PalleteCache.DEFAULT_MAX_BYTES);
+            cache.store("a", image);
+            var file = only(root);
+            corrupt(file, d[0], d[1]);
+            assertNull(cache.load("a"), "int " + d[0] + " = " + d[1]);
+            assertFalse(Files.exists(file), "int " + d[0] + " = " + d[1]);
+        }
+    }
+
+    @Test
+    void staleTemporaryFilesAreRemoved() throws IOException {
+        var root = Files.createTempDirectory("cache");
+        var cache = new PalleteCache(root, PalleteCache.DEFAULT_MAX_BYTES);
+        var stale = Files.createFile(root.resolve("crashed.tmp"));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+        var fresh = Files.createFile(root.resolve("writing.tmp"));
+        cache.store("a", image());
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+        try (var files = Files.list(root)) {
+            assertEquals(2, files.count());
+        }
+    }
+}
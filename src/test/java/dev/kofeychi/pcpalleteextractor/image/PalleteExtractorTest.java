@@ -0,0 +1,94 @@
+package dev.kofeychi.pcpalleteextractor.image;
+
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PalleteExtractorTest {
+
+    /**
+     * Mostly a handful of colors that appear in every tile, with some rare ones that only appear in a few.
+     */
+    static BufferedImage randomImage(Random random, int width, int height, int type) {
+        var image = new BufferedImage(width, height, type);
+        var common = new int[12];
+        for (int i = 0; i < common.length; i++) {
+            common[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb = random.nextInt(50) == 0
+                        ? random.nextInt() | 0x80000000
+                        : common[random.nextInt(common.length)];
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    static void assertSameHistogram(BufferedImage image) {
+        var size = new Vector2i(image.getWidth(), image.getHeight());
+        var expected = PalleteExtractor.histogram(image).toCompact(size);
+        var actual = PalleteExtractor.histogramParallel(image).toCompact(size);
+        String name = image.getWidth() + "x" + image.getHeight() + " type " + image.getType();
+        assertArrayEquals(expected.palette(), actual.palette(), name);
+        assertArrayEquals(expected.offsets(), actual.offsets(), name);
+        assertArrayEquals(expected.pixels(), actual.pixels(), name);
+    }
+
+    @Test
+    void parallelHistogramMatchesSequential() {
+        var random = new Random(17);
+        // above the threshold, rows of the widest packable image, each wider than a tile, and below the threshold
+        assertSameHistogram(randomImage(random, 700, 450, BufferedImage.TYPE_INT_ARGB));
+        assertSameHistogram(randomImage(random, PalleteBuilder.MAX_COORDINATE + 1, 5, BufferedImage.TYPE_INT_ARGB));
+        assertSameHistogram(randomImage(random, 301, 997, BufferedImage.TYPE_INT_RGB));
+        assertSameHistogram(randomImage(random, 640, 480, BufferedImage.TYPE_4BYTE_ABGR));
+        assertSameHistogram(randomImage(random, 100, 100, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @Test
+    void tooWideImagesAreRejected() {
+        var image = new BufferedImage(PalleteBuilder.MAX_COORDINATE + 2, 4, BufferedImage.TYPE_INT_ARGB);
+        assertThrows(IllegalArgumentException.class, () -> PalleteExtractor.histogram(image));
+        assertThrows(IllegalArgumentException.class, () -> PalleteExtractor.histogramParallel(image));
+    }
+
+    @Test
+    void compactKeepsKnownPositions() {
+        int width = PalleteBuilder.MAX_COORDINATE + 1;
+        var image = new BufferedImage(width, 5, BufferedImage.TYPE_INT_ARGB);
+        int[][] marked = {{0, 0}, {width - 1, 0}, {width - 1, 4}, {40000, 3}, {32768, 2}};
+        for (int i = 0; i < marked.length; i++) {
+            image.setRGB(marked[i][0], marked[i][1], 0xFF000001 + i);
+        }
+        var compact = PalleteExtractor.extractCompactParallel(image);
+        for (int i = 0; i < marked.length; i++) {
+            int index = Arrays.binarySearch(compact.palette(), 0xFF000001 + i);
+            assertEquals(1, compact.count(index));
+            int pixel = compact.offsets()[index];
+            assertEquals(marked[i][0], compact.x(pixel));
+            assertEquals(marked[i][1], compact.y(pixel));
+        }
+        // every other pixel stays transparent black
+        assertEquals(marked.length + 1, compact.colorCount());
+        assertEquals(width * 5 - marked.length, compact.count(Arrays.binarySearch(compact.palette(), 0)));
+    }
+
+    @Test
+    void parallelImagesMatchSequential() {
+        var image = randomImage(new Random(23), 600, 500, BufferedImage.TYPE_INT_ARGB);
+        assertEquals(PalleteExtractor.extractPalletedImage(image).palletes(),
+                PalleteExtractor.extractPalletedImageParallel(image).palletes());
+        var expected = PalleteExtractor.extractCompact(image);
+        var actual = PalleteExtractor.extractCompactParallel(image);
+        assertArrayEquals(expected.palette(), actual.palette());
+        assertArrayEquals(expected.offsets(), actual.offsets());
+        assertArrayEquals(expected.pixels(), actual.pixels());
+    }
+}
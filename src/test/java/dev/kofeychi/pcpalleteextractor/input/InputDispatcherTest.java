@@ -0,0 +1,99 @@
+package dev.kofeychi.pcpalleteextractor.input;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class InputDispatcherTest {
+
+    @Test
+    void sendsEventsInOrder() throws Exception {
+        var driver = new RecordingInputDriver();
+        try (var input = new InputDispatcher(driver, 2000, 16)) {
+            input.click(10, 20);
+            input.key(KeyEvent.VK_A);
+            input.flush();
+            assertEquals(6, driver.size());
+            assertEquals(new InputAction(InputAction.Kind.MOVE, 10, 20), driver.action(0));
+            assertEquals(new InputAction(InputAction.Kind.MOVE, 5, 20), driver.action(1));
+            assertEquals(new InputAction(InputAction.Kind.PRESS, InputEvent.BUTTON1_DOWN_MASK, 0), driver.action(2));
+            assertEquals(new InputAction(InputAction.Kind.RELEASE, InputEvent.BUTTON1_DOWN_MASK, 0), driver.action(3));
+            assertEquals(new InputAction(InputAction.Kind.KEY_PRESS, KeyEvent.VK_A, 0), driver.action(4));
+            assertEquals(new InputAction(InputAction.Kind.KEY_RELEASE, KeyEvent.VK_A, 0), driver.action(5));
+        }
+    }
+
+    @Test
+    void spacesEventsByInterval() throws Exception {
+        var driver = new RecordingInputDriver();
+        int events = 40;
+        try (var input = new InputDispatcher(driver, 200, 64)) {
+            long interval = input.intervalNanos();
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(5), interval);
+            for (int i = 0; i < events; i++) {
+                input.move(i, i);
+            }
+            input.flush();
+            assertEquals(events, driver.size());
+            // deadlines are absolute, a late event never makes the whole run shorter
+            long span = driver.time(events - 1) - driver.time(0);
+            assertTrue(span >= (events - 1) * interval - TimeUnit.MILLISECONDS.toNanos(1), "span " + span);
+            var gaps = new long[events - 1];
+            for (int i = 1; i < events; i++) {
+                gaps[i - 1] = driver.time(i) - driver.time(i - 1);
+            }
+            Arrays.sort(gaps);
+            long median = gaps[gaps.length / 2];
+            assertTrue(Math.abs(median - interval) < interval / 5, "median gap " + median);
+        }
+    }
+
+    @Test
+    void pauseDelaysFollowingEvents() throws Exception {
+        var driver = new RecordingInputDriver();
+        long pause = TimeUnit.MILLISECONDS.toNanos(50);
+        try (var input = new InputDispatcher(driver, 1000, 16)) {
+            input.move(0, 0);
+            input.pause(pause);
+            input.move(1, 1);
+            input.flush();
+            assertEquals(2, driver.size());
+            long gap = driver.time(1) - driver.time(0);
+            assertTrue(gap >= pause + input.intervalNanos() - TimeUnit.MILLISECONDS.toNanos(1), "gap " + gap);
+        }
+    }
+
+    @Test
+    void closeDeliversQueuedEventsAndRejectsNewOnes() throws Exception {
+        var driver = new RecordingInputDriver();
+        var input = new InputDispatcher(driver, 1000, 64);
+        for (int i = 0; i < 20; i++) {
+            input.move(i, 0);
+        }
+        input.close();
+        assertEquals(20, driver.size());
+        assertThrows(IllegalStateException.class, () -> input.move(0, 0));
+        input.close();
+        input.flush();
+    }
+
+    @Test
+    void interruptedSubmitDoesNotBlockFlush() throws Exception {
+        var driver = new RecordingInputDriver();
+        try (var input = new InputDispatcher(driver, 1000, 4)) {
+            input.move(0, 0);
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class, () -> input.move(1, 1));
+            assertFalse(Thread.interrupted());
+            input.flush();
+            assertEquals(1, driver.size());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.image.PalletedImage;
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+import dev.kofeychi.pcpalleteextractor.input.RecordingInputDriver;
+import dev.kofeychi.pcpalleteextractor.quantize.ColorDistance;
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(60)
+class ColorSchedulerTest {
+
+    /**
+     * Colors from a few hex families so that consecutive switches share prefixes of every length.
+     */
+    static PalletedImage randomImage(Random random, int size, int colors) {
+        var families = new int[]{0xFF0000, 0xFF8800, 0x12AB00, 0x000000, 0xFFFFFF};
+        var palette = new int[colors];
+        for (int i = 0; i < colors; i++) {
+            palette[i] = 0xFF000000 | families[random.nextInt(families.length)] ^ random.nextInt(1 << random.nextInt(24));
+        }
+        var palletes = new Object2ObjectRBTreeMap<ARGBColor, ObjectArrayList<Vector2i>>();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                var color = ARGBColor.ofTransparent(palette[random.nextInt(colors)]);
+                palletes.computeIfAbsent(color, c -> new ObjectArrayList<>()).add(new Vector2i(x, y));
+            }
+        }
+        return new PalletedImage(palletes, new Vector2i(size, size));
+    }
+
+    @Test
+    void recordedEventsMatchThePrediction() throws Exception {
+        var random = new Random(7);
+        for (int round = 0; round < 10; round++) {
+            var image = randomImage(random, 12, 2 + random.nextInt(20));
+            var scheduler = new ColorScheduler(random.nextInt(3) * 20, ColorDistance.RGB, null, null);
+            scheduler.reusePrefix = round % 2 == 1;
+            var schedule = scheduler.schedule(image);
+            assertEquals(scheduler.reusePrefix, schedule.reusePrefix());
+            var driver = new RecordingInputDriver();
+            try (var input = new InputDispatcher(driver, 1e6, 1024)) {
+                String previous = null;
+                for (var step : schedule.steps()) {
+                    PlanExecutor.switchColor(input, 100, 700, step.color().getColor(), previous);
+                    previous = schedule.reusePrefix() ? ColorScheduler.hex(step.color().getColor()) : null;
+                    for (var pos : step.positions()) {
+                        input.click(pos.x, pos.y);
+                    }
+                }
+                input.flush();
+            }
+            assertEquals(schedule.events(), driver.size(), "round " + round);
+        }
+    }
+
+    @Test
+    void fullRetypeByDefault() {
+        var image = randomImage(new Random(4), 20, 16);
+        var schedule = new ColorScheduler().schedule(image);
+        assertFalse(schedule.reusePrefix());
+        // the order of the image itself, and every switch costs the same as the first
+        assertEquals(new ObjectArrayList<>(image.palletes().keySet()),
+                new ObjectArrayList<>(schedule.steps().stream().map(ColorScheduler.Step::color).iterator()));
+        for (var step : schedule.steps()) {
+            assertEquals(PlanExecutor.switchEvents(null, ColorScheduler.hex(step.color().getColor())), step.switchEvents());
+        }
+    }
+
+    @Test
+    void stepsCoverEveryCellOnceInHexOrder() {
+        var image = randomImage(new Random(3), 20, 16);
+        var scheduler = new ColorScheduler();
+        scheduler.reusePrefix = true;
+        var schedule = scheduler.schedule(image);
+        assertTrue(schedule.switchEvents() < new ColorScheduler().schedule(image).switchEvents());
+        assertEquals(0, schedule.merged());
+        assertEquals(image.size().x * image.size().y, schedule.clicks());
+        for (int i = 1; i < schedule.steps().size(); i++) {
+            int a = 0xFFFFFF & schedule.steps().get(i - 1).color().getColor();
+            int b = 0xFFFFFF & schedule.steps().get(i).color().getColor();
+            assertTrue(a < b);
+        }
+    }
+
+    @Test
+    void toleranceMergesIntoTheMoreFrequentColor() {
+        var palletes = new Object2ObjectRBTreeMap<ARGBColor, ObjectArrayList<Vector2i>>();
+        var red = ARGBColor.ofOpaque(0xFF0000);
+        var almostRed = ARGBColor.ofOpaque(0xFE0101);
+        palletes.put(red, ObjectArrayList.of(new Vector2i(0, 0), new Vector2i(1, 0)));
+        palletes.put(almostRed, ObjectArrayList.of(new Vector2i(2, 0)));
+        var image = new PalletedImage(palletes, new Vector2i(3, 1));
+
+        assertEquals(2, new ColorScheduler().schedule(image).steps().size());
+        var schedule = new ColorScheduler(2, ColorDistance.RGB, null, null).schedule(image);
+        assertEquals(1, schedule.merged());
+        assertEquals(1, schedule.steps().size());
+        assertEquals(red, schedule.steps().get(0).color());
+        assertEquals(3, schedule.clicks());
+    }
+
+    @Test
+    void knownCellsAreSkipped() {
+        var palletes = new Object2ObjectRBTreeMap<ARGBColor, ObjectArrayList<Vector2i>>();
+        var white = ARGBColor.ofOpaque(0xFFFFFF);
+        var black = ARGBColor.ofOpaque(0x000000);
+        palletes.put(white, ObjectArrayList.of(new Vector2i(0, 0), new Vector2i(1, 0)));
+        palletes.put(black, ObjectArrayList.of(new Vector2i(2, 0)));
+        var image = new PalletedImage(palletes, new Vector2i(3, 1));
+
+        var onWhite = new ColorScheduler(0, ColorDistance.RGB, 0xFFFFFFFF, null).schedule(image);
+        assertEquals(1, onWhite.skippedColors());
+        assertEquals(2, onWhite.skippedCells());
+        assertEquals(1, onWhite.clicks());
+
+        // the canvas overrides the background where it has cells
+        var canvasColors = new Object2ObjectRBTreeMap<ARGBColor, ObjectArrayList<Vector2i>>();
+        canvasColors.put(black, ObjectArrayList.of(new Vector2i(0, 0), new Vector2i(2, 0)));
+        var canvas = new PalletedImage(canvasColors, new Vector2i(3, 1));
+        var onCanvas = new ColorScheduler(0, ColorDistance.RGB, 0xFFFFFFFF, canvas).schedule(image);
+        assertEquals(2, onCanvas.skippedCells());
+        assertEquals(1, onCanvas.steps().size());
+        assertEquals(ObjectArrayList.of(new Vector2i(0, 0)), onCanvas.steps().get(0).positions());
+    }
+
+    @Test
+    void rejectsNegativeTolerance() {
+        assertThrows(IllegalArgumentException.class, () -> new ColorScheduler(-1, ColorDistance.RGB, null, null));
+    }
+}
@@ -0,0 +1,124 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.image.PalleteCache;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaintPlanTest {
+
+    static String dump(PaintPlan plan) {
+        var out = new StringBuilder();
+        plan.accept(new PaintPlan.OpConsumer() {
+            @Override
+            public void color(int argb) {
+                out.append("color ").append(argb).append('\n');
+            }
+
+            @Override
+            public void click(int x, int y) {
+                out.append("click ").append(x).append(' ').append(y).append('\n');
+            }
+
+            @Override
+            public void stroke(int[] xs, int[] ys, int count) {
+                out.append("stroke");
+                for (int i = 0; i < count; i++) {
+                    out.append(' ').append(xs[i]).append(',').append(ys[i]);
+                }
+                out.append('\n');
+            }
+
+            @Override
+            public void waitNanos(long nanos) {
+                out.append("wait ").append(nanos).append('\n');
+            }
+        });
+        return out.toString();
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        var dir = Files.createTempDirectory("plan");
+        var random = new Random(1);
+        for (int round = 0; round < 5; round++) {
+            var plan = PlanExecutorTest.randomPlan(random, random.nextInt(500));
+            plan.click(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            plan.waitNanos(Long.MAX_VALUE);
+            var path = dir.resolve("a" + PaintPlan.EXTENSION);
+            plan.write(path);
+            var read = PaintPlan.read(path);
+            assertEquals(plan.pickerX, read.pickerX);
+            assertEquals(plan.pickerY, read.pickerY);
+            assertEquals(plan.size(), read.size());
+            assertEquals(dump(plan), dump(read));
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void failedWriteLeavesNoTemporaryFile() throws IOException {
+        var dir = Files.createTempDirectory("plan");
+        // a non empty directory can't be replaced by the move
+        var target = Files.createDirectory(dir.resolve("taken"));
+        Files.writeString(target.resolve("x"), "x");
+        var plan = new PaintPlan(0, 0);
+        plan.click(1, 2);
+        assertThrows(IOException.class, () -> plan.write(target));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void corruptWaitIsAnIOException() throws IOException {
+        var body = new byte[11];
+        body[0] = PaintPlan.WAIT;
+        // varint with bit 63 set
+        for (int i = 1; i < 10; i++) {
+            body[i] = (byte) 0xFF;
+        }
+        body[10] = 0x01;
+        var buffer = ByteBuffer.allocate(6 * Integer.BYTES + body.length);
+        buffer.putInt(PaintPlan.MAGIC).putInt(PaintPlan.VERSION).putInt(0).putInt(0).putInt(1).putInt(body.length).put(body);
+        var path = Files.createTempFile("plan", PaintPlan.EXTENSION);
+        Files.write(path, buffer.array());
+        assertThrows(IOException.class, () -> PaintPlan.read(path));
+    }
+
+    @Test
+    void truncatedPlanIsAnIOException() throws IOException {
+        var plan = PlanExecutorTest.randomPlan(new Random(2), 50);
+        var path = Files.createTempFile("plan", PaintPlan.EXTENSION);
+        plan.write(path);
+        var bytes = Files.readAllBytes(path);
+        for (int length : new int[]{0, 8, 23, bytes.length - 1}) {
+            Files.write(path, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> PaintPlan.read(path), "length " + length);
+        }
+    }
+
+    @Test
+    void paletteCacheEntriesAreNotPlans() throws IOException {
+        assertNotEquals(PalleteCache.MAGIC, PaintPlan.MAGIC);
+        var root = Files.createTempDirectory("cache");
+        var builder = new PalleteBuilder();
+        builder.add(0xFF102030, 1, 2);
+        new PalleteCache(root, PalleteCache.DEFAULT_MAX_BYTES).store("a", builder.toCompact(new Vector2i(4, 4)));
+        try (var files = Files.list(root)) {
+            for (var file : files.toList()) {
+                assertThrows(IOException.class, () -> PaintPlan.read(file), file.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.TransformableGrid;
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import org.joml.Vector2f;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathOptimizerTest {
+
+    private static void assertPermutation(int[] order, int n) {
+        assertEquals(n, order.length);
+        var seen = new boolean[n];
+        for (int i : order) {
+            assertFalse(seen[i], "point " + i + " visited twice");
+            seen[i] = true;
+        }
+    }
+
+    @Test
+    void ordersAreShorterPermutations() {
+        var random = new Random(1);
+        for (int n : new int[]{0, 1, 2, 3, 10, 1000, 20000}) {
+            var xs = new float[n];
+            var ys = new float[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = random.nextFloat() * 800;
+                ys[i] = random.nextFloat() * 600;
+            }
+            var result = PathOptimizer.optimize(xs, ys, -50, 700, PathOptimizer.DEFAULT_BUDGET_NANOS);
+            assertPermutation(result.order(), n);
+            assertTrue(result.after() <= result.before());
+            assertEquals(PathOptimizer.length(xs, ys, result.order(), -50, 700), result.after(), 1e-3);
+        }
+    }
+
+    @Test
+    void stopsAtTheDeadline() {
+        // two far apart clusters, the tour finishes one and then has to search its way across emptied cells
+        var random = new Random(2);
+        int n = 200_000;
+        var xs = new float[n];
+        var ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            float offset = i < n - 50 ? 0 : 100_000;
+            xs[i] = offset + random.nextFloat() * 2000;
+            ys[i] = random.nextFloat() * 2000;
+        }
+        long start = System.nanoTime();
+        var result = PathOptimizer.optimize(xs, ys, 0, 0, TimeUnit.MILLISECONDS.toNanos(20));
+        long took = System.nanoTime() - start;
+        assertPermutation(result.order(), n);
+        assertTrue(took < TimeUnit.SECONDS.toNanos(5), "took " + took / 1_000_000 + " ms");
+    }
+
+    @Test
+    void reorderLeavesTheImageAlone() {
+        var builder = new PalleteBuilder();
+        var random = new Random(3);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                builder.add(0xFF000000 | random.nextInt(3) * 0x404040, x, y);
+            }
+        }
+        var image = builder.build(new Vector2i(32, 32));
+        var grid = new TransformableGrid(new Rectangle2D.Float(0, 0, 310, 310));
+        grid.recalc(new Vector2i(32, 32));
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                grid.screenPoints[(y * 32 + x) * 2] = x * 10;
+                grid.screenPoints[(y * 32 + x) * 2 + 1] = y * 10;
+            }
+        }
+        Map<ARGBColor, List<Vector2i>> before = new HashMap<>();
+        image.palletes().forEach((color, positions) -> before.put(color, new ArrayList<>(positions)));
+        var ordered = PathOptimizer.reorder(image, grid, new Vector2f(-20, -20), PathOptimizer.DEFAULT_BUDGET_NANOS);
+        image.palletes().forEach((color, positions) -> assertEquals(before.get(color), new ArrayList<>(positions)));
+        ordered.palletes().forEach((color, positions) -> {
+            assertEquals(image.palletes().get(color).size(), positions.size());
+            assertTrue(positions.containsAll(image.palletes().get(color)));
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package dev.kofeychi.pcpalleteextractor.plan;
+
+import dev.kofeychi.pcpalleteextractor.input.InputDispatcher;
+import dev.kofeychi.pcpalleteextractor.input.RecordingInputDriver;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(60)
+class PlanExecutorTest {
+
+    static PaintPlan randomPlan(Random random, int ops) {
+        var plan = new PaintPlan(100, 700);
+        var xs = new int[64];
+        var ys = new int[64];
+        for (int i = 0; i < ops; i++) {
+            switch (random.nextInt(4)) {
+                case 0 -> plan.color(0xFF000000 | random.nextInt(1 << random.nextInt(25)));
+                case 1 -> plan.click(random.nextInt(2000), random.nextInt(2000));
+                case 2 -> {
+                    int count = 1 + random.nextInt(xs.length);
+                    for (int k = 0; k < count; k++) {
+                        xs[k] = random.nextInt(2000);
+                        ys[k] = random.nextInt(2000);
+                    }
+                    plan.stroke(xs, ys, count);
+                }
+                default -> plan.waitNanos(random.nextInt(1000));
+            }
+        }
+        return plan;
+    }
+
+    static int record(Input action) throws Exception {
+        var driver = new RecordingInputDriver();
+        try (var input = new InputDispatcher(driver, 1e6, 1024)) {
+            action.run(input);
+            input.flush();
+        }
+        return driver.size();
+    }
+
+    interface Input {
+        void run(InputDispatcher input) throws Exception;
+    }
+
+    @Test
+    void singleActionsSendThePredictedEvents() throws Exception {
+        assertEquals(InputDispatcher.CLICK_EVENTS, record(input -> input.click(1, 2)));
+        assertEquals(InputDispatcher.KEY_EVENTS, record(input -> input.key('A')));
+        for (int count : new int[]{0, 1, 2, 17}) {
+            assertEquals(InputDispatcher.dragEvents(count), record(input -> input.drag(new int[count], new int[count], count)));
+        }
+        var hexes = new String[]{null, "#000000", "#000001", "#00FF00", "#FFFFFF", "#FFFFFF", "#123456"};
+        for (int i = 0; i + 1 < hexes.length; i++) {
+            var previous = hexes[i];
+            int argb = Integer.parseInt(hexes[i + 1].substring(1), 16);
+            assertEquals(PlanExecutor.switchEvents(previous, hexes[i + 1]),
+                    record(input -> PlanExecutor.switchColor(input, 100, 700, argb, previous)), previous + " -> " + hexes[i + 1]);
+        }
+    }
+
+    @Test
+    void analyzerPredictsTheRecordedEvents() throws Exception {
+        var random = new Random(11);
+        for (int round = 0; round < 10; round++) {
+            var plan = randomPlan(random, 1 + random.nextInt(200));
+            assertEquals(PlanAnalyzer.analyze(plan).events(), record(input -> PlanExecutor.execute(plan, input)), "round " + round);
+            assertEquals(PlanAnalyzer.analyze(plan, true).events(), record(input -> PlanExecutor.execute(plan, input, true)), "round " + round);
+        }
+    }
+
+    @Test
+    void strokeCompilerPredictsTheRecordedEvents() throws Exception {
+        var random = new Random(5);
+        var cells = new ObjectArrayList<Vector2i>();
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 30; x++) {
+                if (random.nextInt(3) != 0) {
+                    cells.add(new Vector2i(x, y));
+                }
+            }
+        }
+        for (int step : new int[]{1, 3}) {
+            var strokes = new StrokeCompiler();
+            strokes.step = step;
+            var runs = strokes.runs(cells);
+            var plan = new PaintPlan(0, 0);
+            for (var run : runs) {
+                if (run.isClick()) {
+                    plan.click(run.x0(), run.y0());
+                } else {
+                    int count = strokes.points(run);
+                    plan.stroke(new int[count], new int[count], count);
+                }
+            }
+            assertEquals(strokes.events(runs), record(input -> PlanExecutor.execute(plan, input)), "step " + step);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearestColorIndexTest {
+
+    /**
+     * Palettes with duplicate entries and pairs mirrored around a center, so queries on the center tie.
+     */
+    static int[] randomPalette(Random random, int size) {
+        var palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(4);
+            if (kind == 0 && i > 0) {
+                palette[i] = palette[random.nextInt(i)];
+            } else if (kind == 1 && i > 0) {
+                palette[i] = mirror(palette[random.nextInt(i)], 0x808080);
+            } else {
+                palette[i] = 0xFF000000 | random.nextInt(1 << 24);
+            }
+        }
+        return palette;
+    }
+
+    static int mirror(int rgb, int center) {
+        int out = 0xFF000000;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int c = center >> shift & 0xFF;
+            out |= Math.clamp(2 * c - (rgb >> shift & 0xFF), 0, 255) << shift;
+        }
+        return out;
+    }
+
+    static int bruteForce(int[] palette, int rgb) {
+        int best = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            long d = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int delta = (rgb >> shift & 0xFF) - (palette[i] >> shift & 0xFF);
+                d += delta * delta;
+            }
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void modesAgreeOnRandomPalettesWithTies() {
+        var random = new Random(11);
+        var modes = NearestColorIndex.Mode.values();
+        for (int round = 0; round < 40; round++) {
+            var palette = randomPalette(random, 1 + random.nextInt(round < 20 ? 16 : 300));
+            var indexes = new NearestColorIndex[modes.length];
+            for (int m = 0; m < modes.length; m++) {
+                indexes[m] = NearestColorIndex.create(modes[m], palette);
+            }
+            for (int q = 0; q < 3000; q++) {
+                // next to the mirror center, next to a palette entry, or anywhere
+                int rgb = switch (q % 3) {
+                    case 0 -> 0x808080 ^ random.nextInt(1 << 24) & 0x010101;
+                    case 1 -> palette[random.nextInt(palette.length)] ^ random.nextInt(2) << random.nextInt(24);
+                    default -> random.nextInt(1 << 24);
+                };
+                int expected = bruteForce(palette, rgb);
+                for (int m = 0; m < modes.length; m++) {
+                    assertEquals(expected, indexes[m].nearestIndex(rgb),
+                            modes[m] + " round " + round + " query " + Integer.toHexString(rgb));
+                }
+            }
+        }
+    }
+
+    @Test
+    void oklabModesAgree() {
+        var random = new Random(13);
+        for (int round = 0; round < 20; round++) {
+            var palette = randomPalette(random, 1 + random.nextInt(200));
+            var linear = NearestColorIndex.create(NearestColorIndex.Mode.LINEAR, palette, ColorDistance.OKLAB);
+            for (var mode : NearestColorIndex.Mode.values()) {
+                var index = NearestColorIndex.create(mode, palette, ColorDistance.OKLAB);
+                for (int q = 0; q < 2000; q++) {
+                    int rgb = q % 2 == 0 ? random.nextInt(1 << 24) : palette[random.nextInt(palette.length)];
+                    assertEquals(linear.nearestIndex(rgb), index.nearestIndex(rgb), mode + " round " + round);
+                }
+            }
+        }
+    }
+
+    @Test
+    void duplicatesResolveToTheFirstEntry() {
+        int[] palette = {0xFF112233, 0xFF445566, 0xFF112233, 0xFF445566};
+        for (var mode : NearestColorIndex.Mode.values()) {
+            var index = NearestColorIndex.create(mode, palette);
+            assertEquals(0, index.nearestIndex(0x112233), mode.toString());
+            assertEquals(1, index.nearestIndex(0x445566), mode.toString());
+        }
+    }
+
+    @Test
+    void rejectsEmptyPalette() {
+        assertThrows(IllegalArgumentException.class,
+                () -> NearestColorIndex.create(NearestColorIndex.Mode.LINEAR, new int[0]));
+    }
+}
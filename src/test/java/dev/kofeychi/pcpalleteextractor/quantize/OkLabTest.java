@@ -0,0 +1,40 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OkLabTest {
+
+    @Test
+    void cubeRootIsFloatAccurate() {
+        double worst = 0;
+        for (int i = 1; i <= 1 << 22; i++) {
+            float x = i / (float) (1 << 22);
+            double exact = Math.cbrt(x);
+            worst = Math.max(worst, Math.abs(OkLab.cbrt(x) - exact) / exact);
+        }
+        assertEquals(0, OkLab.cbrt(0), 0);
+        assertTrue(worst < 5e-7, "relative error " + worst);
+    }
+
+    @Test
+    void tablesMatchTheExactConversion() {
+        var lab = new float[3];
+        var exact = new double[3];
+        double worst = 0;
+        for (int rgb = 0; rgb < 1 << 24; rgb += 7) {
+            OkLab.toLab(rgb, lab, 0);
+            OkLab.toLabExact(rgb, exact);
+            for (int k = 0; k < 3; k++) {
+                worst = Math.max(worst, Math.abs(lab[k] - exact[k]));
+            }
+            // the split methods give the same coordinates
+            float l = OkLab.coneL(rgb), m = OkLab.coneM(rgb), s = OkLab.coneS(rgb);
+            assertEquals(lab[0], OkLab.lightness(l, m, s), 0);
+            assertEquals(lab[1], OkLab.greenRed(l, m, s), 0);
+            assertEquals(lab[2], OkLab.blueYellow(l, m, s), 0);
+        }
+        assertTrue(worst < 1e-5, "absolute error " + worst);
+    }
+}
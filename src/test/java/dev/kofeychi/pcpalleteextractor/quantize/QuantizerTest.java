@@ -0,0 +1,101 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import dev.kofeychi.pcpalleteextractor.ColorReducer;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizerTest {
+
+    static Quantizer[] engines() {
+        return new Quantizer[]{Quantizer.medianCut(), Quantizer.wu(), Quantizer.octree(), Quantizer.kMeans(Quantizer.wu(), 4)};
+    }
+
+    static RgbHistogram histogram(Random random, int pixels) {
+        var histogram = new RgbHistogram();
+        for (int i = 0; i < pixels; i++) {
+            histogram.add(0xFF000000 | random.nextInt(0x1000000));
+        }
+        return histogram;
+    }
+
+    @Test
+    void everyEngineRejectsTheSameCounts() {
+        var histogram = histogram(new Random(1), 1000);
+        for (var engine : engines()) {
+            for (int maxColors : new int[]{0, -1, Integer.MIN_VALUE}) {
+                var e = assertThrows(IllegalArgumentException.class, () -> engine.quantize(histogram, maxColors), engine.name());
+                assertEquals("Color count must be at least 1", e.getMessage());
+                assertThrows(IllegalArgumentException.class, () -> engine.quantize(new RgbHistogram(), maxColors), engine.name());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> MedianCut.palette(histogram, 0));
+        assertThrows(IllegalArgumentException.class, () -> new OctreeQuantizer.Tree(0));
+    }
+
+    @Test
+    void palettesStayWithinTheCount() {
+        var random = new Random(2);
+        for (var engine : engines()) {
+            for (int maxColors : new int[]{1, 2, 7, 64, 256}) {
+                var palette = engine.quantize(histogram(random, 5000), maxColors);
+                assertTrue(palette.length >= 1 && palette.length <= maxColors, engine.name() + " " + maxColors + ": " + palette.length);
+                assertEquals(palette.length, Arrays.stream(palette).distinct().count(), engine.name());
+            }
+            assertEquals(0, engine.quantize(new RgbHistogram(), 16).length, engine.name());
+        }
+    }
+
+    @Test
+    void medianCutKeepsFewColorsExactly() {
+        // both colors fall into the same histogram bin
+        int a = 0xFF101010, b = 0xFF111213;
+        assertEquals(RgbHistogram.indexOf(a), RgbHistogram.indexOf(b));
+        var image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                image.setRGB(x, y, (x + y) % 3 == 0 ? a : b);
+            }
+        }
+        assertArrayEquals(new int[]{a, b}, Quantizer.medianCut().quantize(ColorReducer.histogram(image), 16));
+        var reduced = ColorReducer.reduceColors(image, 16);
+        assertArrayEquals(image.getRGB(0, 0, 8, 8, null, 0, 8), reduced.getRGB(0, 0, 8, 8, null, 0, 8));
+    }
+
+    @Test
+    void exactColorsSurviveMerging() {
+        var random = new Random(3);
+        var colors = new int[300];
+        for (int i = 0; i < colors.length; i++) {
+            // few bins so most colors share one
+            colors[i] = 0xFF000000 | random.nextInt(1 << 24) & 0x0F0F0F;
+        }
+        var whole = new RgbHistogram();
+        var left = new RgbHistogram();
+        var right = new RgbHistogram();
+        for (int i = 0; i < 5000; i++) {
+            int color = colors[random.nextInt(colors.length)];
+            whole.add(color);
+            (i % 2 == 0 ? left : right).add(color);
+        }
+        left.merge(right);
+        var expected = Arrays.stream(colors).distinct().sorted().toArray();
+        assertArrayEquals(expected, whole.exactColors());
+        assertArrayEquals(expected, left.exactColors());
+        // alpha doesn't make a color distinct, fully transparent pixels are ignored
+        whole.add(colors[0] & 0x80FFFFFF);
+        whole.add(0x00ABCDEF);
+        assertArrayEquals(expected, whole.exactColors());
+    }
+
+    @Test
+    void exactColorsGiveUpOnManyColors() {
+        var histogram = histogram(new Random(4), 100_000);
+        assertNull(histogram.exactColors());
+        assertEquals(0, new RgbHistogram().exactColors().length);
+    }
+}
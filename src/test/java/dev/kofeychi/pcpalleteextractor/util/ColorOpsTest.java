@@ -0,0 +1,56 @@
+package dev.kofeychi.pcpalleteextractor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColorOpsTest {
+
+    /**
+     * The per-channel rule {@link ARGBColor#darker} had before it moved to {@link ColorOps}.
+     */
+    static int darkerReference(int argb, double factor) {
+        var color = ARGBColor.ofTransparent(argb);
+        return ARGBColor.ofRGBA(Math.max((int) (color.getRed() * (1 / factor)), 0),
+                Math.max((int) (color.getGreen() * (1 / factor)), 0),
+                Math.max((int) (color.getBlue() * (1 / factor)), 0),
+                color.getAlpha()).getColor();
+    }
+
+    @Test
+    void darkerMatchesTheOriginalRule() {
+        var random = new Random(5);
+        double[] factors = {0.3, 0.7, 1, 1.5, 3, 1000, -1, -2.5, -0.4};
+        for (double factor : factors) {
+            for (int i = 0; i < 2000; i++) {
+                int argb = random.nextInt();
+                assertEquals(darkerReference(argb, factor), ColorOps.darker(argb, factor), "factor " + factor);
+            }
+        }
+    }
+
+    @Test
+    void negativeFactorDoesNotSpillIntoOtherChannels() {
+        int argb = 0x80102030;
+        int darker = ColorOps.darker(argb, -2);
+        assertEquals(0x80000000, darker);
+        assertEquals(0x80, darker >>> 24);
+        assertEquals(ARGBColor.ofTransparent(argb).darker(-2).getColor(), darker);
+    }
+
+    @Test
+    void spanMatchesSingleColors() {
+        var random = new Random(9);
+        var src = new int[64];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt();
+        }
+        var dst = new int[src.length + 2];
+        ColorOps.darker(src, 0, dst, 2, src.length, 1.7);
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(ColorOps.darker(src[i], 1.7), dst[i + 2]);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MainTest {
+
+    @Test
+    void parsesColorCounts() {
+        assertEquals(0, Main.parseColors(new String[0]));
+        assertEquals(0, Main.parseColors(new String[]{"0"}));
+        assertEquals(1, Main.parseColors(new String[]{"1"}));
+        assertEquals(2, Main.parseColors(new String[]{"2"}));
+        assertEquals(256, Main.parseColors(new String[]{" 256 "}));
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        for (var args : new String[][]{{"-1"}, {"-3"}, {"abc"}, {""}, {"99999999999"}, {"16", "extra"}}) {
+            var e = assertThrows(IllegalArgumentException.class, () -> Main.parseColors(args), String.join(" ", args));
+            assertNotNull(e.getMessage());
+            assertFalse(e instanceof NumberFormatException, "raw parse error for " + String.join(" ", args));
+        }
+    }
+}
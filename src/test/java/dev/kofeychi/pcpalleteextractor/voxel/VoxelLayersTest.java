@@ -0,0 +1,125 @@
+package dev.kofeychi.pcpalleteextractor.voxel;
+
+import dev.kofeychi.pcpalleteextractor.image.PalleteBuilder;
+import dev.kofeychi.pcpalleteextractor.util.ARGBColor;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(60)
+class VoxelLayersTest {
+
+    static VoxelBuffer voxels(Random random, int n, IntUnaryOperator y) {
+        var buffer = new VoxelBuffer();
+        buffer.dimensions(64, 64, 64);
+        for (int i = 0; i < n; i++) {
+            buffer.voxel(random.nextInt(64), y.applyAsInt(i), random.nextInt(64), 0xFF000000 | random.nextInt(8) * 0x102030);
+        }
+        return buffer;
+    }
+
+    /**
+     * The counting sort has to give the same layers, in the same voxel order, as streaming the voxels one by one.
+     */
+    static void assertSlicesLikeStreaming(VoxelBuffer voxels) {
+        var slicer = new VoxelLayers.Slicer();
+        slicer.dimensions(voxels.width, voxels.height, voxels.depth);
+        for (int i = 0; i < voxels.size; i++) {
+            slicer.voxel(voxels.x[i], voxels.y[i], voxels.z[i], voxels.argb[i]);
+        }
+        var expected = slicer.layers().layers;
+        var actual = VoxelLayers.slice(voxels).layers;
+        assertEquals(expected.keySet(), actual.keySet());
+        for (var entry : expected.int2ObjectEntrySet()) {
+            assertEquals(entry.getValue(), actual.get(entry.getIntKey()), "layer " + entry.getIntKey());
+        }
+    }
+
+    @Test
+    void denseLayers() {
+        var random = new Random(1);
+        assertSlicesLikeStreaming(voxels(random, 1000, i -> random.nextInt(64)));
+        // more voxels than one counting chunk
+        assertSlicesLikeStreaming(voxels(random, 3 * VoxelLayers.CHUNK + 17, i -> random.nextInt(5) - 2));
+    }
+
+    @Test
+    void sparseLayers() {
+        var random = new Random(2);
+        // a y range wider than int used to overflow the layer count
+        assertSlicesLikeStreaming(voxels(random, 500, i -> random.nextBoolean() ? Integer.MIN_VALUE + random.nextInt(3) : Integer.MAX_VALUE - random.nextInt(3)));
+        assertSlicesLikeStreaming(voxels(random, 2 * VoxelLayers.CHUNK, i -> random.nextInt()));
+        var layers = VoxelLayers.slice(voxels(random, 10, i -> i * 1_000_000)).layers;
+        assertEquals(10, layers.size());
+        assertTrue(layers.containsKey(9_000_000));
+    }
+
+    @Test
+    void negativeCoordinatesAreShiftedToZero() {
+        var random = new Random(3);
+        var voxels = new VoxelBuffer();
+        voxels.dimensions(10, 10, 10);
+        for (int i = 0; i < 400; i++) {
+            voxels.voxel(random.nextInt(20) - 12, random.nextInt(4), random.nextInt(20) - 5, 0xFF000000 | random.nextInt(4) * 0x405060);
+        }
+        voxels.voxel(-12, 0, -5, 0xFFABCDEF);
+        voxels.voxel(7, 0, 14, 0xFF123456);
+        assertSlicesLikeStreaming(voxels);
+
+        var layer = VoxelLayers.slice(voxels).layers.get(0);
+        assertEquals(new Vector2i(20, 20), layer.size());
+        assertTrue(layer.palletes().get(ARGBColor.ofOpaque(0xABCDEF)).contains(new Vector2i(0, 0)));
+        assertTrue(layer.palletes().get(ARGBColor.ofOpaque(0x123456)).contains(new Vector2i(19, 19)));
+        for (var positions : layer.palletes().values()) {
+            for (var pos : positions) {
+                assertTrue(pos.x >= 0 && pos.x < 20 && pos.y >= 0 && pos.y < 20, pos.toString());
+            }
+        }
+    }
+
+    @Test
+    void nonNegativeModelsKeepTheirPositions() {
+        var voxels = new VoxelBuffer();
+        voxels.dimensions(8, 8, 8);
+        voxels.voxel(3, 1, 5, 0xFF102030);
+        var layer = VoxelLayers.slice(voxels).layers.get(1);
+        assertEquals(new Vector2i(8, 8), layer.size());
+        assertEquals(ObjectArrayList.of(new Vector2i(3, 5)), layer.palletes().get(ARGBColor.ofOpaque(0x102030)));
+    }
+
+    @Test
+    void modelsWiderThanALayerAreRejected() {
+        var voxels = new VoxelBuffer();
+        voxels.voxel(-1, 0, 0, 0xFF000000);
+        voxels.voxel(PalleteBuilder.MAX_COORDINATE, 0, 0, 0xFF000000);
+        assertThrows(IllegalArgumentException.class, () -> VoxelLayers.slice(voxels));
+        var slicer = new VoxelLayers.Slicer();
+        slicer.voxel(-1, 0, 0, 0xFF000000);
+        slicer.voxel(PalleteBuilder.MAX_COORDINATE, 0, 0, 0xFF000000);
+        assertThrows(IllegalArgumentException.class, slicer::layers);
+    }
+
+    @Test
+    void quantizeChecksColorCountsLikeTheQuantizers() {
+        var layers = VoxelLayers.slice(voxels(new Random(4), 500, i -> i % 3));
+        var e = assertThrows(IllegalArgumentException.class, () -> layers.quantize(0));
+        assertEquals("Color count must be at least 1", e.getMessage());
+        var single = layers.quantize(1);
+        assertEquals(1, single.palette.length);
+        for (var layer : single.layers.values()) {
+            assertEquals(1, layer.palletes().size());
+        }
+    }
+
+    @Test
+    void emptyBuffer() {
+        assertTrue(VoxelLayers.slice(new VoxelBuffer()).layers.isEmpty());
+        assertTrue(new VoxelLayers.Slicer().layers().layers.isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package dev.kofeychi.pcpalleteextractor.quantize;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Linear palette scan with the Vector API, the palette is kept as separate r, g, b arrays
+ * so one iteration measures the distance to a whole vector of entries.
+ * Lives in the {@code vector} source set, the only one compiled with {@code --add-modules jdk.incubator.vector}.
+ * {@link NearestColorIndex#create} loads it by name and falls back to {@link LinearColorIndex} when the module
+ * or the class isn't there.
+ */
+public class VectorColorIndex implements NearestColorIndex {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    /**
+     * Channel value of the padding entries, far enough to never win and small enough not to overflow.
+     */
+    private static final int FAR = 1 << 14;
+
+    private final int[] palette;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    private final int[] ids;
+
+    public VectorColorIndex(int[] palette) {
+        this.palette = palette;
+        int length = SPECIES.loopBound(palette.length + SPECIES.length() - 1);
+        red = new int[length];
+        green = new int[length];
+        blue = new int[length];
+        ids = new int[length];
+        for (int i = 0; i < length; i++) {
+            ids[i] = i;
+            if (i < palette.length) {
+                red[i] = palette[i] >> 16 & 0xFF;
+                green[i] = palette[i] >> 8 & 0xFF;
+                blue[i] = palette[i] & 0xFF;
+            } else {
+                red[i] = green[i] = blue[i] = FAR;
+            }
+        }
+    }
+
+    @Override
+    public int[] palette() {
+        return palette;
+    }
+
+    @Override
+    public int nearestIndex(int rgb) {
+        var r = IntVector.broadcast(SPECIES, rgb >> 16 & 0xFF);
+        var g = IntVector.broadcast(SPECIES, rgb >> 8 & 0xFF);
+        var b = IntVector.broadcast(SPECIES, rgb & 0xFF);
+        var best = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        var bestId = IntVector.zero(SPECIES);
+        for (int i = 0; i < red.length; i += SPECIES.length()) {
+            var dr = r.sub(IntVector.fromArray(SPECIES, red, i));
+            var dg = g.sub(IntVector.fromArray(SPECIES, green, i));
+            var db = b.sub(IntVector.fromArray(SPECIES, blue, i));
+            var dist = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db));
+            // strict comparison keeps the lowest index per lane
+            var closer = dist.lt(best);
+            best = best.blend(dist, closer);
+            bestId = bestId.blend(IntVector.fromArray(SPECIES, ids, i), closer);
+        }
+        int min = best.reduceLanes(VectorOperators.MIN);
+        return bestId.blend(Integer.MAX_VALUE, best.compare(VectorOperators.NE, min)).reduceLanes(VectorOperators.MIN);
+    }
+}